@@ -0,0 +1,69 @@
+package net.cortex.clientAddon.cracker;
+
+import net.earthcomputer.clientcommands.features.Lcg;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks a full lattice crack of the player seed from the angles of thrown items, both stopping at the first seed
+ * found and enumerating every seed. Run with {@code -prof gc} to see the allocation per crack.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LatticeCrackerBenchmark {
+
+    private static final int RECORDING_COUNT = 16;
+
+    @Param({"20", "14"})
+    public int items;
+
+    @Param({"true", "false"})
+    public boolean stopAtFirst;
+
+    private long[] steps;
+    private int[] bitCounts;
+    private final long[][] recordings = new long[RECORDING_COUNT][];
+    private int nextRecording = 0;
+
+    @Setup
+    public void setup() {
+        steps = new long[items];
+        bitCounts = new int[items];
+        for (int i = 0; i < items; i++) {
+            steps[i] = 4L * i;
+            bitCounts[i] = 4;
+        }
+        Random rand = new Random(0x5eed);
+        for (int i = 0; i < RECORDING_COUNT; i++)
+            recordings[i] = recordBits(rand.nextLong() & Lcg.MASK, items);
+    }
+
+    /**
+     * Records the top 4 bits of the angle of each of the items thrown from the given seed, which come from the first of
+     * its 4 RNG calls. This is a harder case than {@link ThrowObservation}, which also uses the rest of the velocity.
+     */
+    private static long[] recordBits(long seed, int items) {
+        long[] bits = new long[items];
+        for (int i = 0; i < items; i++) {
+            long angleSeed = Lcg.next(seed);
+            bits[i] = angleSeed >>> 44;
+            seed = Lcg.advance(seed, 4);
+        }
+        return bits;
+    }
+
+    @Benchmark
+    public List<Long> crack() {
+        long[] bits = recordings[nextRecording];
+        nextRecording = (nextRecording + 1) % RECORDING_COUNT;
+        return Lattice_cracker.crack(steps, bitCounts, bits, stopAtFirst);
+    }
+
+}
@@ -0,0 +1,68 @@
+package net.earthcomputer.clientcommands;
+
+import net.minecraft.item.ItemStack;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the enchantment level hook, which the seed filters call three times per candidate XP seed. Forge isn't
+ * available here, so a static method with the same signature stands in for the Forge hook, called both reflectively
+ * (as the hooks used to be) and through the bound interface.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ForgeHooksBenchmark {
+
+    private ForgeHooks vanilla;
+    private Method reflective;
+    private ForgeHooks.OnEnchantmentLevelSet bound;
+    private int level;
+
+    public static int onEnchantmentLevelSet(World world, BlockPos tablePos, int slot, int power, ItemStack itemToEnchant, int level) {
+        return level;
+    }
+
+    @Setup
+    public void setup() throws NoSuchMethodException {
+        vanilla = ForgeHooks.instance();
+        reflective = ForgeHooksBenchmark.class.getMethod("onEnchantmentLevelSet", World.class, BlockPos.class, int.class, int.class, ItemStack.class, int.class);
+        bound = ForgeHooks.bind(ForgeHooks.OnEnchantmentLevelSet.class, ForgeHooksBenchmark.class, "onEnchantmentLevelSet", MethodType.methodType(int.class, World.class, BlockPos.class, int.class, int.class, ItemStack.class, int.class));
+    }
+
+    @Benchmark
+    public int vanilla() {
+        int sum = 0;
+        for (int slot = 0; slot < 3; slot++)
+            sum += vanilla.ForgeEventFactory_onEnchantmentLevelSet(null, null, slot, 15, null, level + slot);
+        level++;
+        return sum;
+    }
+
+    @Benchmark
+    public int reflective() throws ReflectiveOperationException {
+        int sum = 0;
+        for (int slot = 0; slot < 3; slot++)
+            sum += (Integer) reflective.invoke(null, null, null, slot, 15, null, level + slot);
+        level++;
+        return sum;
+    }
+
+    @Benchmark
+    public int bound() {
+        int sum = 0;
+        for (int slot = 0; slot < 3; slot++)
+            sum += bound.onEnchantmentLevelSet(null, null, slot, 15, null, level + slot);
+        level++;
+        return sum;
+    }
+
+}
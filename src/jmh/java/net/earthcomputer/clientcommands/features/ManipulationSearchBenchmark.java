@@ -0,0 +1,60 @@
+package net.earthcomputer.clientcommands.features;
+
+import net.minecraft.Bootstrap;
+import net.minecraft.enchantment.Enchantments;
+import net.minecraft.enchantment.InfoEnchantment;
+import net.minecraft.item.Items;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Benchmarks the search behind /cenchant for different values of the maxEnchantItemThrows rule. The "none" target
+ * never matches, so it measures a search over every throw count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ManipulationSearchBenchmark {
+
+    private static final long PLAYER_SEED = 0x123456789abcL;
+
+    @Param({"256", "2048", "16384"})
+    public int maxEnchantItemThrows;
+
+    @Param({"none", "sharpness5Looting3"})
+    public String target;
+
+    private Predicate<List<InfoEnchantment>> predicate;
+
+    @Setup
+    public void setup() {
+        Bootstrap.initialize();
+        if ("none".equals(target)) {
+            predicate = enchantments -> false;
+        } else {
+            predicate = enchantments -> {
+                boolean sharpness = false, looting = false;
+                for (InfoEnchantment ench : enchantments) {
+                    if (ench.enchantment == Enchantments.SHARPNESS && ench.level == 5)
+                        sharpness = true;
+                    else if (ench.enchantment == Enchantments.LOOTING && ench.level == 3)
+                        looting = true;
+                }
+                return sharpness && looting;
+            };
+        }
+    }
+
+    @Benchmark
+    public EnchantmentCracker.ManipulateResult search() {
+        ManipulationSearch search = new ManipulationSearch(Items.DIAMOND_SWORD, predicate, false, 0, new PlayerRandLookahead(PLAYER_SEED), maxEnchantItemThrows);
+        return CrackerPool.get().submit(search::run).join();
+    }
+
+}
@@ -0,0 +1,78 @@
+package net.earthcomputer.clientcommands.features;
+
+import net.minecraft.Bootstrap;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import net.minecraft.util.math.BlockPos;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks filtering all 2^20 XP seed candidates with the first enchanting table observation
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SeedFilterBenchmark {
+
+    private static final int XP_SEED = 0x12345678;
+    private static final int BOOKSHELVES = 15;
+
+    private EnchantmentCracker.SeedInfoFilter.Observation observation;
+
+    @Setup
+    public void setup() {
+        Bootstrap.initialize();
+
+        // work out what the enchanting table would show for the XP seed
+        Item item = Items.DIAMOND_SWORD;
+        EnchantmentSimulator simulator = new EnchantmentSimulator();
+        int[] levels = new int[3];
+        int[] enchantmentClues = new int[3];
+        int[] levelClues = new int[3];
+        simulator.setSeed(XP_SEED);
+        for (int slot = 0; slot < 3; slot++) {
+            levels[slot] = simulator.calculateEnchantmentPower(slot, BOOKSHELVES, item.getEnchantability());
+            if (levels[slot] < slot + 1)
+                levels[slot] = 0;
+        }
+        for (int slot = 0; slot < 3; slot++) {
+            enchantmentClues[slot] = -1;
+            levelClues[slot] = -1;
+            if (levels[slot] > 0) {
+                int count = simulator.generateEnchantments(item, XP_SEED, slot, levels[slot]);
+                if (count != 0) {
+                    int clue = simulator.nextInt(count);
+                    enchantmentClues[slot] = simulator.getEnchantmentId(clue);
+                    levelClues[slot] = simulator.getEnchantmentLevel(clue);
+                }
+            }
+        }
+
+        observation = new EnchantmentCracker.SeedInfoFilter.Observation(null, BlockPos.ORIGIN, BOOKSHELVES,
+                new ItemStack(item), levels, enchantmentClues, levelClues);
+    }
+
+    @Benchmark
+    public int filter() {
+        XpSeedCandidates candidates = new XpSeedCandidates();
+        candidates.fill(XP_SEED);
+        candidates.retainAll(new EnchantmentCracker.SeedInfoFilter(observation, new EnchantmentCracker.SeedInfoFilter.Stats()));
+        return candidates.size();
+    }
+
+    @Benchmark
+    public int filterParallel() {
+        EnchantmentCracker.SeedInfoFilter.Stats stats = new EnchantmentCracker.SeedInfoFilter.Stats();
+        XpSeedCandidates candidates = new XpSeedCandidates();
+        candidates.fill(XP_SEED);
+        candidates.retainAllParallel(() -> new EnchantmentCracker.SeedInfoFilter(observation, stats), CrackerPool.get());
+        return candidates.size();
+    }
+
+}
@@ -0,0 +1,49 @@
+package net.earthcomputer.clientcommands.features;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Benchmarks looking ahead in the player RNG for the number of item throws needed to avoid damaging a tool with
+ * unbreaking, as the infiniteTools rule does
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class UnbreakingLookaheadBenchmark {
+
+    @Param({"1", "3"})
+    public int unbreakingLevel;
+
+    @Param({"1", "4"})
+    public int amount;
+
+    private Predicate<Random> condition;
+    private final Random seedSource = new Random(0x5eed);
+
+    @Setup
+    public void setup() {
+        int unbreakingLevel = this.unbreakingLevel;
+        int amount = this.amount;
+        condition = rand -> {
+            for (int i = 0; i < amount; i++) {
+                if (rand.nextInt(unbreakingLevel + 1) == 0)
+                    return false;
+            }
+            return true;
+        };
+    }
+
+    @Benchmark
+    public int lookahead() {
+        long seed = seedSource.nextLong() & PlayerRandCracker.MASK;
+        return PlayerRandCracker.getItemsNeeded(seed, condition, 64);
+    }
+
+}
@@ -0,0 +1,151 @@
+package net.cortex.clientAddon.cracker;
+
+import net.earthcomputer.clientcommands.features.CrackerExecutor;
+import net.earthcomputer.clientcommands.features.CrackerPool;
+import net.earthcomputer.clientcommands.features.EnchantmentCracker;
+import net.earthcomputer.clientcommands.features.Lcg;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Finds the player seed again after it has been advanced an unknown number of times since it was last known, such as
+ * by sprinting or eating.
+ *
+ * The seed is usually only a few steps on from what was known, so rather than cracking it from scratch, every seed
+ * {@code k} steps on from a known seed is checked against the constraints of a few thrown items, for {@code k} up to
+ * some maximum. Each range of {@code k} starts with a jump ahead, then takes single steps, so checking a candidate is
+ * a handful of multiplications. Large searches are split into ranges which are checked in parallel on the
+ * {@link CrackerPool}. The search gives up if it is cancelled, which is checked every so often.
+ */
+public class ResyncSearch
+{
+    // the number of ranges per thread, so that threads which finish early can steal more work
+    private static final int RANGES_PER_THREAD=8;
+    // below this, splitting the search costs more than it saves
+    private static final long MIN_RANGE_SIZE=1<<14;
+    // how often each range checks whether the search was cancelled, as a mask of the step number
+    private static final long CANCEL_CHECK_MASK=(1<<16)-1;
+
+    private final long[] knownSeeds;
+    private final long maxAdvances;
+    private final Lattice_cracker.Constraint[] constraints;
+    private final BooleanSupplier cancelled;
+    private CrackerExecutor.Progress progress;
+
+    /**
+     * @param knownSeeds the seeds which might have been advanced
+     * @param maxAdvances the most steps the seed might have been advanced
+     * @param constraints the constraints on the seed after it was advanced
+     * @param cancelled whether the search should give up, which may be called from any thread
+     */
+    public ResyncSearch(long[] knownSeeds, long maxAdvances, List<Lattice_cracker.Constraint> constraints, BooleanSupplier cancelled)
+    {
+        this.knownSeeds=knownSeeds;
+        this.maxAdvances=maxAdvances;
+        this.constraints=constraints.toArray(new Lattice_cracker.Constraint[0]);
+        this.cancelled=cancelled;
+    }
+
+    /**
+     * Returns every seed matching the constraints, in order of the known seed they came from and then the number of
+     * steps, without duplicates. If the search was cancelled, returns no seeds.
+     */
+    public List<Long> run()
+    {
+        Set<Long> seeds=new LinkedHashSet<>();
+        progress=CrackerExecutor.startProgress("enchCrack.progress.playerSeed",knownSeeds.length*(maxAdvances+1),0);
+        try
+        {
+            ForkJoinPool pool=CrackerPool.get();
+            long rangeSize=Math.max(MIN_RANGE_SIZE,(maxAdvances+1)/((long)pool.getParallelism()*RANGES_PER_THREAD));
+            for(long knownSeed:knownSeeds)
+            {
+                if(cancelled.getAsBoolean())
+                    break;
+                RangeTask task=new RangeTask(knownSeed,0,maxAdvances+1,rangeSize);
+                pool.invoke(task);
+                seeds.addAll(task.seeds);
+            }
+        }
+        finally
+        {
+            progress.finish();
+        }
+        if(cancelled.getAsBoolean())
+        {
+            EnchantmentCracker.LOGGER.info("Resync cancelled");
+            seeds.clear();
+        }
+        return new ArrayList<>(seeds);
+    }
+
+    private boolean matches(long seed)
+    {
+        for(Lattice_cracker.Constraint constraint:constraints)
+            if(!constraint.matches(seed))
+                return false;
+        return true;
+    }
+
+    private class RangeTask extends RecursiveAction
+    {
+        private final long knownSeed;
+        private final long from;
+        private final long to;
+        private final long rangeSize;
+        private List<Long> seeds;
+
+        RangeTask(long knownSeed, long from, long to, long rangeSize)
+        {
+            this.knownSeed=knownSeed;
+            this.from=from;
+            this.to=to;
+            this.rangeSize=rangeSize;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if(to-from<=rangeSize)
+            {
+                seeds=check();
+            }
+            else
+            {
+                long mid=from+(to-from)/2;
+                RangeTask left=new RangeTask(knownSeed,from,mid,rangeSize);
+                RangeTask right=new RangeTask(knownSeed,mid,to,rangeSize);
+                invokeAll(left,right);
+                seeds=left.seeds;
+                seeds.addAll(right.seeds);
+            }
+        }
+
+        private List<Long> check()
+        {
+            List<Long> seeds=new ArrayList<>();
+            long seed=Lcg.advance(knownSeed,from);
+            long k;
+            for(k=from;k<to;k++)
+            {
+                if((k&CANCEL_CHECK_MASK)==0&&cancelled.getAsBoolean())
+                    break;
+                if(matches(seed))
+                {
+                    EnchantmentCracker.LOGGER.info("Found possible seed "+seed+" after "+k+" steps");
+                    seeds.add(seed);
+                    progress.add(0,1);
+                }
+                seed=Lcg.next(seed);
+            }
+            progress.add(k-from,0);
+            return seeds;
+        }
+    }
+}
@@ -20,6 +20,7 @@ public class SeedCrackTask extends LongTask {
 
     @Override
     public void body() {
+        SeedCracker.tick();
         scheduleDelay();
     }
 
@@ -27,6 +28,7 @@ public class SeedCrackTask extends LongTask {
     public void onCompleted() {
         if (condition())
             TempRules.playerCrackState = PlayerRandCracker.CrackState.UNCRACKED;
+        SeedCracker.cancelSearch();
         SeedCracker.currentTask = null;
     }
 }
@@ -2,7 +2,10 @@ package net.cortex.clientAddon.cracker;
 
 import net.earthcomputer.clientcommands.TempRules;
 import net.earthcomputer.clientcommands.command.ClientCommandManager;
+import net.earthcomputer.clientcommands.features.CrackerExecutor;
 import net.earthcomputer.clientcommands.features.EnchantmentCracker;
+import net.earthcomputer.clientcommands.features.Lcg;
+import net.earthcomputer.clientcommands.features.ObservationQueue;
 import net.earthcomputer.clientcommands.features.PlayerRandCracker;
 import net.earthcomputer.clientcommands.task.LongTask;
 import net.earthcomputer.clientcommands.task.TaskManager;
@@ -15,24 +18,54 @@ import net.minecraft.server.network.packet.PlayerMoveC2SPacket;
 import net.minecraft.text.*;
 import net.minecraft.util.Formatting;
 
-import java.util.Random;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class SeedCracker {
     public interface OnCrack {void callback(long seed); }
 
 
     public static OnCrack callback;
-    public static long[] bits=new long[20];
-    public static int expectedItems=0;
+    // each item gives over 20 bits of the seed, so 3 are usually enough and the 4th is to spare
+    public static final int THROWN_ITEMS=4;
+    // the lattice solver can still crack the seed with some of the item packets missing from the end
+    private static final int MIN_OBSERVED_ITEMS=3;
+    // a resync only has to tell apart the seeds near the last known one, which one item usually does and the rest are to spare
+    public static final int RESYNC_ITEMS=3;
+    // each item bounds at least this many bits of the seed, and a resync needs enough bits to rule out all but one of
+    // the seeds it searches, with some to spare so that a wrong seed is unlikely to match
+    private static final int BITS_PER_ITEM=20;
+    private static final int RESYNC_SPARE_BITS=8;
+    private static final int MISSING_ITEM_TIMEOUT_TICKS=40;
+    private static final float THROW_YAW=0;
+    private static final float THROW_PITCH=90;
+
+    // the item spawn packets still to come, only used on the client thread
+    private static int expectedItems=0;
+    private static int ticksSinceItem=0;
+    private static int batchSize=THROWN_ITEMS;
+    private static int minObservedItems=MIN_OBSERVED_ITEMS;
+    private static boolean resyncing=false;
+    // the velocity of each item from its spawn packet, only used on the cracker thread
+    private static final double[][] velocities=new double[THROWN_ITEMS][3];
+    private static final boolean[] observed=new boolean[THROWN_ITEMS];
+    // the batch the items are from, only used on the cracker thread
+    private static NewBatch currentBatch=new NewBatch(THROWN_ITEMS,MIN_OBSERVED_ITEMS,null,0);
     public static LongTask currentTask;
+    private static boolean crackInProgress = false;
+    // changed when the crack is stopped, so that a search still running on the cracker thread knows to give up
+    private static volatile int searchGeneration = 0;
 
     //returns True on success or false on failer
-    private static boolean throwItems()
+    private static boolean throwItems(int count)
     {
         ClientPlayerEntity player = MinecraftClient.getInstance().player;
-        player.refreshPositionAndAngles(player.getX(), player.getY(), player.getZ(), 0, 90);
-        MinecraftClient.getInstance().getNetworkHandler().sendPacket(new PlayerMoveC2SPacket.LookOnly(0, 90, true)); // point to correct location
-        for (int i = 0; i < 20; i++) {
+        player.refreshPositionAndAngles(player.getX(), player.getY(), player.getZ(), THROW_YAW, THROW_PITCH);
+        MinecraftClient.getInstance().getNetworkHandler().sendPacket(new PlayerMoveC2SPacket.LookOnly(THROW_YAW, THROW_PITCH, true)); // point to correct location
+        for (int i = 0; i < count; i++) {
             boolean success = PlayerRandCracker.throwItem();
             if (!success) {
                 MinecraftClient.getInstance().inGameHud.addChatMessage(MessageType.GAME_INFO, new TranslatableText("itemCrack.notEnoughItems").formatted(Formatting.RED));
@@ -44,40 +77,89 @@ public class SeedCracker {
     }
 	public static void attemptCrack()
 	{
-		long seed= Lattice_cracker.crack(SeedCracker.bits);
+		crackInProgress = true;
+		// the search runs on the cracker thread once it has seen the items, the result is handled back on the client thread
+		CompletableFuture<List<Long>> result = new CompletableFuture<>();
+		if (!ObservationQueue.offer(new Crack(result, searchGeneration)))
+			result.complete(Collections.emptyList());
+		CrackerExecutor.whenDone("crackPlayerSeed", result, SeedCracker::onCrackResult, e -> onCrackResult(Collections.emptyList()));
+	}
+
+	/**
+	 * Called every tick while cracking. If some item packets never arrived, cracks with the ones that did.
+	 */
+	public static void tick()
+	{
+		if (expectedItems > 0 && ++ticksSinceItem > MISSING_ITEM_TIMEOUT_TICKS && batchSize - expectedItems >= minObservedItems
+				&& TempRules.playerCrackState == PlayerRandCracker.CrackState.CRACKING && !crackInProgress)
+		{
+			SeedCracker.attemptCrack();
+		}
+	}
+
+	private static void onCrackResult(List<Long> seeds)
+	{
+		crackInProgress = false;
+		if (TempRules.playerCrackState != PlayerRandCracker.CrackState.CRACKING)
+			return; // cancelled or reset while we were cracking
 
-		if(seed==0)//Basicaly if seed is zero it means it failed to try to crack again
+		if (seeds.size() != 1) // no seed, or too few items to tell which, so throw some more
 		{
+			if (resyncing)
+				EnchantmentCracker.LOGGER.info("Found " + seeds.size() + " possible seeds near the last known seed, cracking from scratch");
+			else
+				EnchantmentCracker.LOGGER.info("Found " + seeds.size() + " possible seeds, trying again");
 			SeedCracker.crack(SeedCracker.callback);
 			return;
 		}
-		//Else, got a seed
 
         TempRules.playerCrackState = PlayerRandCracker.CrackState.CRACKED;
-		
-		Random rand=new Random();
-		rand.setSeed(seed ^ PlayerRandCracker.MULTIPLIER);
-		rand.nextFloat();
-		rand.nextFloat();
-		//rand.nextFloat();
-		
-        /*
-		for(int i=0;i<13;i++) {
-			long x = (((long) (rand.nextFloat() * ((float) (1 << 24)))) >> (24 - 4))&0xFL;
-			System.out.print("Expected: "+padLeftZeros(Long.toBinaryString(x), 4)+" ");
-			System.out.print(padLeftZeros(Long.toBinaryString((((long) (rand.nextFloat() * ((float) (1 << 24)))) >> (24 - 4))&0xFL), 4)+" ");
-			System.out.print(padLeftZeros(Long.toBinaryString((((long) (rand.nextFloat() * ((float) (1 << 24)))) >> (24 - 4))&0xFL), 4)+" ");
-			System.out.print(padLeftZeros(Long.toBinaryString((((long) (rand.nextFloat() * ((float) (1 << 24)))) >> (24 - 4))&0xFL), 4)+" \n");
-		}*/
-
-		callback.callback(PlayerRandCracker.getSeed(rand));//extract seed and call callback
+		expectedItems = 0;
+
+		// the seed is from before the throws, and the items we didn't see were still thrown
+		callback.callback(Lcg.advance(seeds.get(0), 4L * batchSize));
 	}
     public static void crack(OnCrack Callback){
+        startBatch(Callback, new NewBatch(THROWN_ITEMS, MIN_OBSERVED_ITEMS, null, 0));
+    }
+
+    /**
+     * Finds the seed again after some of the given seeds has been advanced at most {@code maxAdvances} times, which
+     * only needs a few items. If that doesn't pin down the seed, cracks it from scratch instead.
+     */
+    public static void resync(long[] knownSeeds, int maxAdvances, OnCrack Callback){
+        double searchedBits = Math.log(knownSeeds.length * (maxAdvances + 1.0)) / Math.log(2);
+        int minItems = Math.min(RESYNC_ITEMS, Math.max(1, (int) Math.ceil((searchedBits + RESYNC_SPARE_BITS) / BITS_PER_ITEM)));
+        startBatch(Callback, new NewBatch(RESYNC_ITEMS, minItems, knownSeeds.clone(), maxAdvances));
+    }
+
+    /**
+     * Called when the crack is stopped, to stop any search still running for it
+     */
+    public static void cancelSearch() {
+        searchGeneration++;
+    }
+
+    private static void startBatch(OnCrack Callback, NewBatch batch){
         callback=Callback;
-        if(throwItems())
+        crackInProgress = false;
+        resyncing = batch.knownSeeds != null;
+        if (!ObservationQueue.offer(batch)) {
+            // the items would be filed under the previous batch, so don't throw them
+            EnchantmentCracker.LOGGER.error("Observation queue full, unable to start a batch of items");
+            ClientCommandManager.sendError(new TranslatableText("commands.ccrackrng.queueFull"));
+            expectedItems = 0;
+            if (TempRules.playerCrackState == PlayerRandCracker.CrackState.CRACKING)
+                TempRules.playerCrackState = PlayerRandCracker.CrackState.UNCRACKED;
+            return;
+        }
+        if(throwItems(batch.size))
         {
             TempRules.playerCrackState = PlayerRandCracker.CrackState.CRACKING;
-            expectedItems=20;
+            batchSize=batch.size;
+            minObservedItems=batch.minObservedItems;
+            expectedItems=batch.size;
+            ticksSinceItem=0;
             if (currentTask == null) {
                 currentTask = new SeedCrackTask();
                 String taskName = TaskManager.addTask("ccrackrng", currentTask);
@@ -92,23 +174,105 @@ public class SeedCracker {
     public static void onEntityCreation(EntitySpawnS2CPacket packet) {
         if (packet.getEntityTypeId() == EntityType.ITEM && SeedCracker.expectedItems>0) {
 
-            long rand_val = (long) ((Math.atan2(packet.getVelocityz(), packet.getVelocityX()) + Math.PI) / (Math.PI * 2) * ((float) (1 << 24)));
-            long top_bits = rand_val;
-            short value = (short) (((top_bits >> (24 - 4)) ^ 0x8L )&0xFL);//INSTEAD OF ^0x8L MAYBE DO +math.pi OR SOMETHING ELSE
-            SeedCracker.bits[20-SeedCracker.expectedItems]=(long)value;//could be improved
+            // a dropped item is treated the same as a missing packet
+            ObservationQueue.offer(new ItemSpawn(batchSize - SeedCracker.expectedItems, packet.getVelocityX(), packet.getVelocityY(), packet.getVelocityz()));
             SeedCracker.expectedItems--;
+            ticksSinceItem=0;
         }
-        if(SeedCracker.expectedItems == 0 && TempRules.playerCrackState == PlayerRandCracker.CrackState.CRACKING)//if its the last item
+        if(SeedCracker.expectedItems == 0 && TempRules.playerCrackState == PlayerRandCracker.CrackState.CRACKING && !crackInProgress)//if its the last item
         {
             SeedCracker.attemptCrack();
         }
-        /*
-        else
-        {
-            long rand_val = (long) ((Math.atan2(this.getVelocityz(), this.getVelocityX()) + Math.PI) / (Math.PI * 2) * ((float) (1 << 24)));
-            long top_bits = rand_val;
-            short value = (short) ((top_bits >> (24 - 4)) ^ 0x8L);
-            System.out.println("Entity item spawn: Top 4 bits of direction: "+padLeftZeros(Long.toBinaryString(value), 4));
-        }*/
+    }
+
+    // ===== OBSERVATIONS ===== //
+
+    /**
+     * The start of a batch of thrown items, which forgets the items of the previous batch
+     */
+    private static class NewBatch implements ObservationQueue.Observation {
+        private final int size;
+        private final int minObservedItems;
+        // the seeds to search near when resyncing, or null to crack from scratch
+        private final long[] knownSeeds;
+        private final int maxAdvances;
+
+        NewBatch(int size, int minObservedItems, long[] knownSeeds, int maxAdvances) {
+            this.size = size;
+            this.minObservedItems = minObservedItems;
+            this.knownSeeds = knownSeeds;
+            this.maxAdvances = maxAdvances;
+        }
+
+        @Override
+        public void process() {
+            Arrays.fill(observed, false);
+            currentBatch = this;
+        }
+    }
+
+    private static class ItemSpawn implements ObservationQueue.Observation {
+        private final int index;
+        private final double velocityX;
+        private final double velocityY;
+        private final double velocityZ;
+
+        ItemSpawn(int index, double velocityX, double velocityY, double velocityZ) {
+            this.index = index;
+            this.velocityX = velocityX;
+            this.velocityY = velocityY;
+            this.velocityZ = velocityZ;
+        }
+
+        @Override
+        public void process() {
+            velocities[index][0] = velocityX;
+            velocities[index][1] = velocityY;
+            velocities[index][2] = velocityZ;
+            observed[index] = true;
+        }
+    }
+
+    /**
+     * Cracks the seed from the items seen so far in the batch
+     */
+    private static class Crack implements ObservationQueue.Observation {
+        private final CompletableFuture<List<Long>> result;
+        private final int generation;
+
+        Crack(CompletableFuture<List<Long>> result, int generation) {
+            this.result = result;
+            this.generation = generation;
+        }
+
+        @Override
+        public void process() {
+            try {
+                List<Lattice_cracker.Constraint> constraints = new ArrayList<>();
+                int observedItems = 0;
+                NewBatch batch = currentBatch;
+                for (int i = 0; i < batch.size; i++) {
+                    if (observed[i]) {
+                        ThrowObservation.addConstraints(constraints, 4L * i, THROW_YAW, THROW_PITCH, velocities[i][0], velocities[i][1], velocities[i][2]);
+                        observedItems++;
+                    }
+                }
+                if (observedItems < batch.minObservedItems) {
+                    result.complete(Collections.emptyList());
+                    return;
+                }
+                if (batch.knownSeeds != null) {
+                    EnchantmentCracker.LOGGER.info("Resyncing the player seed with " + observedItems + " of " + batch.size + " items");
+                    result.complete(new ResyncSearch(batch.knownSeeds, batch.maxAdvances, constraints, () -> searchGeneration != generation).run());
+                } else {
+                    EnchantmentCracker.LOGGER.info("Cracking the player seed with " + observedItems + " of " + batch.size + " items");
+                    result.complete(Lattice_cracker.crack(constraints, false));
+                }
+            } catch (RuntimeException e) {
+                // e.g. the observed items didn't give a constraint the seed can be recovered from, so throw some more
+                EnchantmentCracker.LOGGER.error("Error cracking the player seed", e);
+                result.complete(Collections.emptyList());
+            }
+        }
     }
 }
@@ -0,0 +1,145 @@
+package net.cortex.clientAddon.cracker;
+
+import net.minecraft.util.math.MathHelper;
+
+import java.util.List;
+
+/**
+ * Recovers what can be known about the player RNG from the velocity of an item the player threw.
+ *
+ * Throwing an item makes 4 calls to {@code nextFloat}: the angle of the horizontal spread, its magnitude, and two
+ * whose difference offsets the vertical velocity. The spawn packet rounds each velocity component towards zero to a
+ * multiple of 1/8000, so the horizontal spread lies in a small box, which bounds its angle and magnitude, and the
+ * vertical offset lies in a range. These bound the top 24 bits of the first two states, and the difference of the top
+ * 24 bits of the other two, which is often over 20 bits per item rather than the 4 bits of angle used before.
+ */
+public class ThrowObservation
+{
+    private static final double VELOCITY_SCALE=8000;
+    private static final float SPEED=0.3F;
+    private static final float SPREAD=0.02F;
+    private static final float VERTICAL_SPREAD=0.1F;
+    private static final long FLOAT_UNIT=1L<<24;
+    // room for the rounding of the float maths in PlayerEntity.dropItem, in units of the 24 bit floats
+    private static final long FLOAT_SLACK=32;
+
+    /**
+     * Adds the constraints from an item thrown by a player with the given rotation
+     *
+     * @param steps the number of player RNG calls before the throw
+     * @param velocityX the velocity of the item as decoded from its spawn packet
+     */
+    public static void addConstraints(List<Lattice_cracker.Constraint> constraints, long steps, float yaw, float pitch, double velocityX, double velocityY, double velocityZ)
+    {
+        // the velocity before the RNG is added, the same way as in PlayerEntity.dropItem
+        float sinPitch=MathHelper.sin(pitch*0.017453292F);
+        float cosPitch=MathHelper.cos(pitch*0.017453292F);
+        float sinYaw=MathHelper.sin(yaw*0.017453292F);
+        float cosYaw=MathHelper.cos(yaw*0.017453292F);
+        double baseX=-sinYaw*cosPitch*SPEED;
+        double baseZ=cosYaw*cosPitch*SPEED;
+        double baseY=-sinPitch*SPEED+0.1F;
+
+        // the horizontal spread is cos(angle) * magnitude, sin(angle) * magnitude
+        double minX=getMinVelocity(velocityX)-baseX;
+        double maxX=getMaxVelocity(velocityX)-baseX;
+        double minZ=getMinVelocity(velocityZ)-baseZ;
+        double maxZ=getMaxVelocity(velocityZ)-baseZ;
+
+        boolean containsOrigin=minX<=0&&maxX>=0&&minZ<=0&&maxZ>=0;
+        if(!containsOrigin)
+        {
+            // measure the angles of the corners from the middle, so that the range doesn't wrap in the middle
+            double middle=Math.atan2((minZ+maxZ)/2,(minX+maxX)/2);
+            double minAngle=Double.POSITIVE_INFINITY;
+            double maxAngle=Double.NEGATIVE_INFINITY;
+            for(int corner=0;corner<4;corner++)
+            {
+                double x=(corner&1)==0?minX:maxX;
+                double z=(corner&2)==0?minZ:maxZ;
+                double angle=Math.IEEEremainder(Math.atan2(z,x)-middle,Math.PI*2);
+                minAngle=Math.min(minAngle,angle);
+                maxAngle=Math.max(maxAngle,angle);
+            }
+            if(middle<0)
+                middle+=Math.PI*2;
+            addFloatConstraint(constraints,steps+1,(middle+minAngle)/(Math.PI*2),(middle+maxAngle)/(Math.PI*2),true);
+        }
+
+        double minMagnitude=Math.hypot(closestToZero(minX,maxX),closestToZero(minZ,maxZ));
+        double maxMagnitude=Math.hypot(Math.max(-minX,maxX),Math.max(-minZ,maxZ));
+        addFloatConstraint(constraints,steps+2,minMagnitude/SPREAD,maxMagnitude/SPREAD,false);
+
+        // the vertical offset is (nextFloat() - nextFloat()) * 0.1
+        double minOffset=(getMinVelocity(velocityY)-baseY)/VERTICAL_SPREAD;
+        double maxOffset=(getMaxVelocity(velocityY)-baseY)/VERTICAL_SPREAD;
+        long minDifference=Math.max(-FLOAT_UNIT+1,(long)Math.floor(minOffset*FLOAT_UNIT)-FLOAT_SLACK);
+        long maxDifference=Math.min(FLOAT_UNIT-1,(long)Math.ceil(maxOffset*FLOAT_UNIT)+FLOAT_SLACK);
+        if(minDifference<=maxDifference)
+        {
+            // the low 24 bits of each state add up to less than one either way
+            constraints.add(Lattice_cracker.Constraint.difference(steps+3,steps+4,
+                    minDifference*FLOAT_UNIT-(FLOAT_UNIT-1),maxDifference*FLOAT_UNIT+(FLOAT_UNIT-1)));
+        }
+    }
+
+    /**
+     * Returns whether an item with the given velocity could have been thrown by a player with the given rotation, for
+     * telling the player's own throws apart from other items spawning nearby
+     */
+    public static boolean isPossibleThrow(float yaw, float pitch, double velocityX, double velocityY, double velocityZ)
+    {
+        float sinPitch=MathHelper.sin(pitch*0.017453292F);
+        float cosPitch=MathHelper.cos(pitch*0.017453292F);
+        float sinYaw=MathHelper.sin(yaw*0.017453292F);
+        float cosYaw=MathHelper.cos(yaw*0.017453292F);
+        double baseX=-sinYaw*cosPitch*SPEED;
+        double baseZ=cosYaw*cosPitch*SPEED;
+        double baseY=-sinPitch*SPEED+0.1F;
+
+        double slack=(double)FLOAT_SLACK/FLOAT_UNIT;
+        double minMagnitude=Math.hypot(closestToZero(getMinVelocity(velocityX)-baseX,getMaxVelocity(velocityX)-baseX),
+                closestToZero(getMinVelocity(velocityZ)-baseZ,getMaxVelocity(velocityZ)-baseZ));
+        if(minMagnitude>SPREAD*(1+slack))
+            return false;
+        double minOffset=(getMinVelocity(velocityY)-baseY)/VERTICAL_SPREAD;
+        double maxOffset=(getMaxVelocity(velocityY)-baseY)/VERTICAL_SPREAD;
+        return minOffset<1+slack&&maxOffset>-1-slack;
+    }
+
+    /**
+     * Adds a constraint that the float generated from the state after the given number of steps is in the range. If
+     * the range wraps, the bounds may be outside 0 to 1 and are taken modulo 1.
+     */
+    private static void addFloatConstraint(List<Lattice_cracker.Constraint> constraints, long steps, double min, double max, boolean wraps)
+    {
+        long minFloat=(long)Math.floor(min*FLOAT_UNIT)-FLOAT_SLACK;
+        long maxFloat=(long)Math.ceil(max*FLOAT_UNIT)+FLOAT_SLACK;
+        if(!wraps)
+        {
+            minFloat=Math.max(minFloat,0);
+            maxFloat=Math.min(maxFloat,FLOAT_UNIT-1);
+        }
+        if(maxFloat-minFloat>=FLOAT_UNIT-1)
+            return; // nothing is known
+        constraints.add(Lattice_cracker.Constraint.state(steps,minFloat*FLOAT_UNIT,maxFloat*FLOAT_UNIT+FLOAT_UNIT-1));
+    }
+
+    private static double closestToZero(double min, double max)
+    {
+        return min>0?min:max<0?-max:0;
+    }
+
+    // the packet rounds towards zero, so a component was anywhere up to the next multiple away from zero
+    private static double getMinVelocity(double velocity)
+    {
+        long units=Math.round(velocity*VELOCITY_SCALE);
+        return (units>0?units:units-1)/VELOCITY_SCALE;
+    }
+
+    private static double getMaxVelocity(double velocity)
+    {
+        long units=Math.round(velocity*VELOCITY_SCALE);
+        return (units<0?units:units+1)/VELOCITY_SCALE;
+    }
+}
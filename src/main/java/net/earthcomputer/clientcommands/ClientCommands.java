@@ -3,6 +3,8 @@ package net.earthcomputer.clientcommands;
 import com.mojang.brigadier.CommandDispatcher;
 import net.earthcomputer.clientcommands.command.*;
 import net.earthcomputer.clientcommands.command.FindBlockCommand;
+import net.earthcomputer.clientcommands.features.EnchantPowerCache;
+import net.earthcomputer.clientcommands.interfaces.IBlockChangeListener;
 import net.earthcomputer.clientcommands.script.ScriptManager;
 import net.fabricmc.api.ClientModInitializer;
 import net.fabricmc.loader.api.FabricLoader;
@@ -22,6 +24,8 @@ public class ClientCommands implements ClientModInitializer {
         configDir.mkdirs();
 
         ScriptManager.reloadScripts();
+
+        IBlockChangeListener.LISTENERS.add(EnchantPowerCache::onBlockChange);
     }
 
     public static void registerCommands(CommandDispatcher<ServerCommandSource> dispatcher) {
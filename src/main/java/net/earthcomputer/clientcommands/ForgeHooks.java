@@ -5,8 +5,13 @@ import net.minecraft.item.ItemStack;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 
 public class ForgeHooks {
 
@@ -24,30 +29,54 @@ public class ForgeHooks {
         return instance;
     }
 
+    /**
+     * The highest level the enchanting table can roll in any slot, with at most 15 bookshelves
+     */
+    public static final int MAX_TABLE_LEVEL = 30;
+
     private ForgeHooks() {}
 
     public int ForgeEventFactory_onEnchantmentLevelSet(World world, BlockPos tablePos, int slot, int power, ItemStack itemToEnchant, int level) {
         return level;
     }
 
+    /**
+     * Returns {@link #ForgeEventFactory_onEnchantmentLevelSet} for every slot and every level up to
+     * {@link #MAX_TABLE_LEVEL}, indexed by slot then level, or null if the hook doesn't change the level. Event handlers
+     * and the world aren't thread safe, so this must be called on the client thread, and the crackers use the table.
+     */
+    public int[][] getEnchantmentLevelTable(World world, BlockPos tablePos, int power, ItemStack itemToEnchant) {
+        return null;
+    }
+
     public int ForgeHooks_getEnchantPower(World world, BlockPos pos) {
         return world.getBlockState(pos).getBlock() == Blocks.BOOKSHELF ? 1 : 0;
     }
 
     private static class ForgeImpl extends ForgeHooks {
-        static Class<?> clsForgeEventFactory = getClass("net.minecraftforge.event.ForgeEventFactory");
-        static Class<?> clsForgeHooks = getClass("net.minecraftforge.common.ForgeHooks");
-        static Method mthForgeEventFactory_onEnchantmentLevelSet = getMethod(clsForgeEventFactory, "onEnchantmentLevelSet", World.class, BlockPos.class, int.class, int.class, ItemStack.class, int.class);
-        static Method mthForgeHooks_getEnchantPower = getMethod(clsForgeHooks, "getEnchantPower", World.class, BlockPos.class);
+        // bound once into typed interfaces rather than called through Method.invoke, so that there's no boxing when
+        // filling in the level tables and working out the bookshelf power
+        static final OnEnchantmentLevelSet onEnchantmentLevelSet = bind(OnEnchantmentLevelSet.class, getClass("net.minecraftforge.event.ForgeEventFactory"), "onEnchantmentLevelSet", MethodType.methodType(int.class, World.class, BlockPos.class, int.class, int.class, ItemStack.class, int.class));
+        static final GetEnchantPower getEnchantPower = bind(GetEnchantPower.class, getClass("net.minecraftforge.common.ForgeHooks"), "getEnchantPower", MethodType.methodType(int.class, World.class, BlockPos.class));
 
         @Override
         public int ForgeEventFactory_onEnchantmentLevelSet(World world, BlockPos tablePos, int slot, int power, ItemStack itemToEnchant, int level) {
-            return (Integer) invokeMethod(mthForgeEventFactory_onEnchantmentLevelSet, null, world, tablePos, slot, power, itemToEnchant, level);
+            return onEnchantmentLevelSet.onEnchantmentLevelSet(world, tablePos, slot, power, itemToEnchant, level);
+        }
+
+        @Override
+        public int[][] getEnchantmentLevelTable(World world, BlockPos tablePos, int power, ItemStack itemToEnchant) {
+            int[][] table = new int[3][MAX_TABLE_LEVEL + 1];
+            for (int slot = 0; slot < 3; slot++) {
+                for (int level = 0; level <= MAX_TABLE_LEVEL; level++)
+                    table[slot][level] = onEnchantmentLevelSet.onEnchantmentLevelSet(world, tablePos, slot, power, itemToEnchant, level);
+            }
+            return table;
         }
 
         @Override
         public int ForgeHooks_getEnchantPower(World world, BlockPos pos) {
-            return (Integer) invokeMethod(mthForgeHooks_getEnchantPower, null, world, pos);
+            return getEnchantPower.getEnchantPower(world, pos);
         }
 
         private static Class<?> getClass(String name) {
@@ -57,28 +86,40 @@ public class ForgeHooks {
                 throw new AssertionError(e);
             }
         }
-        private static Method getMethod(Class<?> clazz, String method, Class<?>... args) {
-            try {
-                return clazz.getMethod(method, args);
-            } catch (NoSuchMethodException e) {
-                throw new AssertionError(e);
+    }
+
+    /**
+     * Binds a public static method to an implementation of a functional interface with the same signature
+     */
+    static <T> T bind(Class<T> functionalInterface, Class<?> owner, String method, MethodType type) {
+        Method interfaceMethod = null;
+        for (Method m : functionalInterface.getMethods()) {
+            if (Modifier.isAbstract(m.getModifiers())) {
+                interfaceMethod = m;
+                break;
             }
         }
-        private static Object invokeMethod(Method method, Object instance, Object... args) {
-            try {
-                return method.invoke(instance, args);
-            } catch (InvocationTargetException e) {
-                if (e.getTargetException() instanceof RuntimeException) {
-                    throw (RuntimeException) e.getTargetException();
-                } else if (e.getTargetException() instanceof Error) {
-                    throw (Error) e.getTargetException();
-                } else {
-                    throw new RuntimeException(e.getTargetException());
-                }
-            } catch (ReflectiveOperationException e) {
-                throw new AssertionError(e);
-            }
+        if (interfaceMethod == null)
+            throw new IllegalArgumentException(functionalInterface + " is not a functional interface");
+
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodHandle target = lookup.findStatic(owner, method, type);
+            CallSite site = LambdaMetafactory.metafactory(lookup, interfaceMethod.getName(), MethodType.methodType(functionalInterface), type, target, type);
+            return functionalInterface.cast(site.getTarget().invoke());
+        } catch (Throwable e) {
+            throw new AssertionError(e);
         }
     }
 
+    @FunctionalInterface
+    interface OnEnchantmentLevelSet {
+        int onEnchantmentLevelSet(World world, BlockPos tablePos, int slot, int power, ItemStack itemToEnchant, int level);
+    }
+
+    @FunctionalInterface
+    interface GetEnchantPower {
+        int getEnchantPower(World world, BlockPos pos);
+    }
+
 }
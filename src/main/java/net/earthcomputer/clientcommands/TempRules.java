@@ -41,6 +41,18 @@ public class TempRules {
     @Rule
     public static boolean playerRNGMaintenance = true;
 
+    @Rule(readOnly = true)
+    public static int playerRandHypotheses = 0;
+
+    @Rule(setter = "setMaxPlayerRandHypotheses")
+    public static int maxPlayerRandHypotheses = 64;
+    public static void setMaxPlayerRandHypotheses(int maxPlayerRandHypotheses) {
+        TempRules.maxPlayerRandHypotheses = MathHelper.clamp(maxPlayerRandHypotheses, 1, 4096);
+    }
+
+    @Rule
+    public static boolean parallelEnchantmentCracking = false;
+
     @Rule
     public static boolean toolBreakWarning = false;
 
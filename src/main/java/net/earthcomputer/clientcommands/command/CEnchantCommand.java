@@ -1,23 +1,39 @@
 package net.earthcomputer.clientcommands.command;
 
 import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import com.mojang.brigadier.exceptions.SimpleCommandExceptionType;
 import com.mojang.brigadier.tree.LiteralCommandNode;
 import net.earthcomputer.clientcommands.TempRules;
+import net.earthcomputer.clientcommands.features.EnchantPowerCache;
+import net.earthcomputer.clientcommands.features.EnchantmentDistribution;
+import net.earthcomputer.clientcommands.features.ProbeSelection;
 import net.earthcomputer.clientcommands.features.EnchantmentCracker;
 import net.earthcomputer.clientcommands.interfaces.IServerCommandSource;
 import net.minecraft.command.CommandException;
 import net.minecraft.enchantment.InfoEnchantment;
+import net.minecraft.item.Item;
 import net.minecraft.server.command.ServerCommandSource;
 import net.minecraft.text.*;
 import net.minecraft.util.Formatting;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static com.mojang.brigadier.arguments.IntegerArgumentType.*;
 import static net.earthcomputer.clientcommands.command.arguments.ItemAndEnchantmentsPredicateArgumentType.*;
+import static net.earthcomputer.clientcommands.command.arguments.ItemAndEnchantmentsPredicateListArgumentType.*;
 import static net.earthcomputer.clientcommands.command.ClientCommandManager.*;
 import static net.minecraft.server.command.CommandManager.*;
 
 public class CEnchantCommand {
 
     private static final int FLAG_SIMULATE = 1;
+    private static final int MAX_BATCH_SIZE = 8;
+    private static final int DISTRIBUTION_TOP_OUTCOMES = 3;
+
+    private static final SimpleCommandExceptionType TOO_MANY_EXCEPTION = new SimpleCommandExceptionType(new TranslatableText("commands.cenchant.batch.tooMany", MAX_BATCH_SIZE));
 
     public static void register(CommandDispatcher<ServerCommandSource> dispatcher) {
         addClientSideCommand("cenchant");
@@ -26,59 +42,231 @@ public class CEnchantCommand {
         dispatcher.register(literal("cenchant")
             .then(literal("--simulate")
                 .redirect(cenchant, ctx -> ctx.getSource().withLevel(((IServerCommandSource) ctx.getSource()).getLevel() | FLAG_SIMULATE)))
+            .then(literal("batch")
+                .then(argument("itemAndEnchantmentsPredicates", itemAndEnchantmentsPredicates())
+                    .executes(ctx -> cenchantBatch(ctx.getSource(), getItemAndEnchantmentsPredicates(ctx, "itemAndEnchantmentsPredicates")))))
+            .then(literal("probe")
+                .executes(ctx -> cenchantProbe()))
+            .then(literal("distribution")
+                .then(literal("--bookshelves")
+                    .then(argument("bookshelves", integer(0, 15))
+                        .then(argument("itemAndEnchantmentsPredicate", itemAndEnchantmentsPredicate())
+                            .executes(ctx -> cenchantDistribution(getItemAndEnchantmentsPredicate(ctx, "itemAndEnchantmentsPredicate"), getInteger(ctx, "bookshelves"))))))
+                .then(argument("itemAndEnchantmentsPredicate", itemAndEnchantmentsPredicate())
+                    .executes(ctx -> cenchantDistribution(getItemAndEnchantmentsPredicate(ctx, "itemAndEnchantmentsPredicate"), -1))))
             .then(argument("itemAndEnchantmentsPredicate", itemAndEnchantmentsPredicate())
                 .executes(ctx -> cenchant(ctx.getSource(), getItemAndEnchantmentsPredicate(ctx, "itemAndEnchantmentsPredicate")))));
     }
 
-    private static int cenchant(ServerCommandSource source, ItemAndEnchantmentsPredicate itemAndEnchantmentsPredicate) throws CommandException {
+    private static boolean checkEnchantingPrediction() {
         if (!TempRules.getEnchantingPrediction()) {
             Text text = new TranslatableText("commands.cenchant.needEnchantingPrediction")
                     .formatted(Formatting.RED)
                     .append(" ")
                     .append(getCommandTextComponent("commands.cenchant.needEnchantingPrediction.enable", "/ctemprule set enchantingPrediction true"));
             sendFeedback(text);
-            return 0;
+            return false;
         }
+        return true;
+    }
+
+    private static void sendUncracked() {
+        Text text = new TranslatableText("commands.cenchant.uncracked")
+                .formatted(Formatting.RED)
+                .append(" ")
+                .append(getCommandTextComponent("commands.client.crack", "/ccrackrng"));
+        sendFeedback(text);
+    }
+
+    private static int cenchant(ServerCommandSource source, ItemAndEnchantmentsPredicate itemAndEnchantmentsPredicate) throws CommandException {
+        if (!checkEnchantingPrediction())
+            return 0;
         if (!TempRules.playerCrackState.knowsSeed() && TempRules.enchCrackState != EnchantmentCracker.CrackState.CRACKED) {
-            Text text = new TranslatableText("commands.cenchant.uncracked")
-                    .formatted(Formatting.RED)
-                    .append(" ")
-                    .append(getCommandTextComponent("commands.client.crack", "/ccrackrng"));
-            sendFeedback(text);
+            sendUncracked();
             return 0;
         }
 
         boolean simulate = (((IServerCommandSource) source).getLevel() & FLAG_SIMULATE) != 0;
 
-        EnchantmentCracker.ManipulateResult result = EnchantmentCracker.manipulateEnchantments(
+        EnchantmentCracker.manipulateEnchantments(
                 itemAndEnchantmentsPredicate.item,
                 itemAndEnchantmentsPredicate.predicate,
-                simulate
+                simulate,
+                result -> {
+                    if (result == null) {
+                        sendFeedback("commands.cenchant.failed");
+                    } else if (simulate) {
+                        if (result.getItemThrows() < 0) {
+                            sendFeedback("enchCrack.insn.itemThrows.noDummy");
+                        } else {
+                            sendFeedback(new TranslatableText("enchCrack.insn.itemThrows", result.getItemThrows(), (float)result.getItemThrows() / 20f));
+                        }
+                        sendBookshelves(result.getBookshelves());
+                        sendFeedback(new TranslatableText("enchCrack.insn.slot", result.getSlot() + 1));
+                        sendFeedback("enchCrack.insn.enchantments");
+                        for (InfoEnchantment ench : result.getEnchantments()) {
+                            sendFeedback(new LiteralText("- ").append(ench.enchantment.getName(ench.level)));
+                        }
+                    } else {
+                        sendFeedback("commands.cenchant.success");
+                    }
+                }
         );
-        if (result == null) {
-            sendFeedback("commands.cenchant.failed");
+        return 0;
+    }
+
+    private static int cenchantBatch(ServerCommandSource source, List<ItemAndEnchantmentsPredicate> itemAndEnchantmentsPredicates) throws CommandSyntaxException {
+        if (itemAndEnchantmentsPredicates.size() > MAX_BATCH_SIZE)
+            throw TOO_MANY_EXCEPTION.create();
+        if (!checkEnchantingPrediction())
+            return 0;
+        // planning more than one item needs the player RNG to predict the XP seeds after the first enchantment
+        if (!TempRules.playerCrackState.knowsSeed()) {
+            sendUncracked();
             return 0;
-        } else {
+        }
 
-            if (simulate) {
-                if (result.getItemThrows() < 0) {
-                    sendFeedback("enchCrack.insn.itemThrows.noDummy");
-                } else {
-                    sendFeedback(new TranslatableText("enchCrack.insn.itemThrows", result.getItemThrows(), (float)result.getItemThrows() / 20f));
+        boolean simulate = (((IServerCommandSource) source).getLevel() & FLAG_SIMULATE) != 0;
+
+        List<Item> items = new ArrayList<>();
+        List<Predicate<List<InfoEnchantment>>> predicates = new ArrayList<>();
+        for (ItemAndEnchantmentsPredicate itemAndEnchantmentsPredicate : itemAndEnchantmentsPredicates) {
+            items.add(itemAndEnchantmentsPredicate.item);
+            predicates.add(itemAndEnchantmentsPredicate.predicate);
+        }
+
+        EnchantmentCracker.planEnchantments(items, predicates, simulate, plan -> {
+            if (plan == null) {
+                sendFeedback("commands.cenchant.failed");
+                return;
+            }
+            int totalThrows = 0;
+            int dummyEnchants = 0;
+            for (EnchantmentCracker.PlanStep step : plan) {
+                if (step.getResult().getItemThrows() >= 0) {
+                    totalThrows += step.getResult().getItemThrows();
+                    dummyEnchants++;
                 }
-                sendFeedback(new TranslatableText("enchCrack.insn.bookshelves", result.getBookshelves()));
-                sendFeedback(new TranslatableText("enchCrack.insn.slot", result.getSlot()));
-                sendFeedback("enchCrack.insn.enchantments");
-                for (InfoEnchantment ench : result.getEnchantments()) {
-                    sendFeedback(new LiteralText("- ").append(ench.enchantment.getName(ench.level)));
+            }
+            if (simulate) {
+                for (int i = 0; i < plan.size(); i++) {
+                    EnchantmentCracker.PlanStep step = plan.get(i);
+                    EnchantmentCracker.ManipulateResult result = step.getResult();
+                    sendFeedback(new TranslatableText("commands.cenchant.batch.step", i + 1, step.getItem().getName()).formatted(Formatting.BOLD));
+                    if (result.getItemThrows() < 0) {
+                        sendFeedback("enchCrack.insn.itemThrows.noDummy");
+                    } else {
+                        sendFeedback(new TranslatableText("enchCrack.insn.itemThrows", result.getItemThrows(), (float)result.getItemThrows() / 20f));
+                    }
+                    sendBookshelves(result.getBookshelves());
+                    sendFeedback(new TranslatableText("enchCrack.insn.slot", result.getSlot() + 1));
+                    sendFeedback("enchCrack.insn.enchantments");
+                    for (InfoEnchantment ench : result.getEnchantments()) {
+                        sendFeedback(new LiteralText("- ").append(ench.enchantment.getName(ench.level)));
+                    }
                 }
-                return 0;
+                sendFeedback(new TranslatableText("commands.cenchant.batch.total", totalThrows, dummyEnchants));
+            } else {
+                sendFeedback(new TranslatableText("commands.cenchant.batch.success", plan.size(), totalThrows, dummyEnchants));
+            }
+        });
+        return 0;
+    }
+
+    private static int cenchantDistribution(ItemAndEnchantmentsPredicate itemAndEnchantmentsPredicate, int bookshelves) {
+        if (!checkEnchantingPrediction())
+            return 0;
+        // the distribution is over the XP seeds after item throws, which needs the player RNG
+        if (!TempRules.playerCrackState.knowsSeed()) {
+            sendUncracked();
+            return 0;
+        }
 
+        if (bookshelves == -1) {
+            bookshelves = EnchantPowerCache.getCachedEnchantPower();
+            if (bookshelves == -1)
+                bookshelves = 15;
+        }
+        int shownBookshelves = bookshelves;
+
+        EnchantmentCracker.enchantmentDistribution(itemAndEnchantmentsPredicate.item, itemAndEnchantmentsPredicate.predicate, distribution -> {
+            if (distribution == null)
+                return;
+            int total = distribution.getMaxThrows();
+            sendFeedback(new TranslatableText("commands.cenchant.distribution.header", distribution.getItem().getName(), total).formatted(Formatting.BOLD));
+
+            // the bookshelf count and slot which most often give the wanted enchantments
+            int bestBookshelves = 0;
+            int bestSlot = 0;
+            for (int b = 0; b <= 15; b++) {
+                for (int slot = 0; slot < 3; slot++) {
+                    if (distribution.getMatches(b, slot) > distribution.getMatches(bestBookshelves, bestSlot)) {
+                        bestBookshelves = b;
+                        bestSlot = slot;
+                    }
+                }
+            }
+            if (distribution.getMatches(bestBookshelves, bestSlot) == 0) {
+                sendFeedback("commands.cenchant.distribution.noMatches");
             } else {
-                sendFeedback("commands.cenchant.success");
-                return 0;
+                sendFeedback(new TranslatableText("commands.cenchant.distribution.best", bestBookshelves, bestSlot + 1,
+                        formatPercentage(distribution.getMatches(bestBookshelves, bestSlot), total)));
             }
+
+            sendFeedback(new TranslatableText("commands.cenchant.distribution.bookshelves", shownBookshelves));
+            for (int slot = 0; slot < 3; slot++) {
+                sendFeedback(new TranslatableText("commands.cenchant.distribution.slot", slot + 1,
+                        distribution.getOutcomeCount(shownBookshelves, slot),
+                        formatPercentage(distribution.getMatches(shownBookshelves, slot), total)));
+                for (EnchantmentDistribution.Outcome outcome : distribution.getTopOutcomes(shownBookshelves, slot, DISTRIBUTION_TOP_OUTCOMES)) {
+                    Text line = new LiteralText("- ");
+                    if (outcome.isUnavailable()) {
+                        line.append(new TranslatableText("commands.cenchant.distribution.unavailable"));
+                    } else {
+                        List<InfoEnchantment> enchantments = outcome.getEnchantments();
+                        for (int i = 0; i < enchantments.size(); i++) {
+                            if (i != 0)
+                                line.append(", ");
+                            line.append(enchantments.get(i).enchantment.getName(enchantments.get(i).level));
+                        }
+                    }
+                    line.append(" (" + formatPercentage(outcome.getCount(), total) + "%)");
+                    sendFeedback(line);
+                }
+            }
+        });
+        return 0;
+    }
+
+    private static int cenchantProbe() {
+        if (!checkEnchantingPrediction())
+            return 0;
+        if (TempRules.enchCrackState == EnchantmentCracker.CrackState.CRACKED) {
+            sendFeedback("commands.cenchant.probe.cracked");
+            return 0;
         }
+
+        boolean started = EnchantmentCracker.suggestProbeItems(scores -> {
+            ProbeSelection.Score best = scores.get(0);
+            sendFeedback(new TranslatableText("commands.cenchant.probe.best", best.getItem().getName()).formatted(Formatting.BOLD));
+            for (ProbeSelection.Score score : scores) {
+                sendFeedback(new TranslatableText("commands.cenchant.probe.score", score.getItem().getName(), Math.round(score.getExpectedCandidates())));
+            }
+        });
+        if (!started)
+            sendFeedback(new TranslatableText("commands.cenchant.probe.noItems").formatted(Formatting.RED));
+        return 0;
+    }
+
+    private static String formatPercentage(int count, int total) {
+        return String.format("%.1f", total == 0 ? 0 : count * 100.0 / total);
+    }
+
+    private static void sendBookshelves(int bookshelvesNeeded) {
+        sendFeedback(new TranslatableText("enchCrack.insn.bookshelves", bookshelvesNeeded));
+        int currentBookshelves = EnchantPowerCache.getCachedEnchantPower();
+        if (currentBookshelves != -1 && currentBookshelves != bookshelvesNeeded)
+            sendFeedback(new TranslatableText("enchCrack.insn.bookshelves.current", currentBookshelves));
     }
 
 }
@@ -32,6 +32,15 @@ public class ClientCommandManager {
         sendFeedback(new LiteralText("").append(error).formatted(Formatting.RED));
     }
 
+    /**
+     * Reports an error thrown by background work, with its message shown on hover
+     */
+    public static void sendBackgroundError(Throwable e) {
+        LiteralText error = new LiteralText(e.getMessage() == null ? e.getClass().getName() : e.getMessage());
+        sendError(new TranslatableText("commands.client.backgroundError")
+                .styled(style -> style.setHoverEvent(new HoverEvent(HoverEvent.Action.SHOW_TEXT, error))));
+    }
+
     public static void sendFeedback(String message) {
         sendFeedback(new TranslatableText(message));
     }
@@ -1,6 +1,9 @@
 package net.earthcomputer.clientcommands.command;
 
 import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import com.mojang.brigadier.exceptions.Dynamic2CommandExceptionType;
+import com.mojang.brigadier.exceptions.SimpleCommandExceptionType;
 import net.cortex.clientAddon.cracker.SeedCracker;
 import net.earthcomputer.clientcommands.ServerBrandManager;
 import net.earthcomputer.clientcommands.TempRules;
@@ -8,27 +11,54 @@ import net.earthcomputer.clientcommands.features.PlayerRandCracker;
 import net.minecraft.server.command.ServerCommandSource;
 import net.minecraft.text.TranslatableText;
 
+import static com.mojang.brigadier.arguments.IntegerArgumentType.*;
 import static net.earthcomputer.clientcommands.command.ClientCommandManager.addClientSideCommand;
 import static net.earthcomputer.clientcommands.command.ClientCommandManager.sendFeedback;
+import static net.minecraft.server.command.CommandManager.argument;
 import static net.minecraft.server.command.CommandManager.literal;
 
 public class CrackRNGCommand {
 
+    private static final int DEFAULT_MAX_ADVANCES = 1 << 16;
+    private static final int MAX_MAX_ADVANCES = 1 << 26;
+    // the most seeds a resync checks, which is the number of known seeds times the number of advances from each
+    private static final long MAX_RESYNC_WORK = 1L << 28;
+
+    private static final SimpleCommandExceptionType NO_SEED_EXCEPTION = new SimpleCommandExceptionType(new TranslatableText("commands.ccrackrng.resync.noSeed"));
+    private static final Dynamic2CommandExceptionType TOO_MUCH_WORK_EXCEPTION = new Dynamic2CommandExceptionType((knownSeeds, maxAdvances) -> new TranslatableText("commands.ccrackrng.resync.tooMuchWork", knownSeeds, maxAdvances));
+
     public static void register(CommandDispatcher<ServerCommandSource> dispatcher) {
         addClientSideCommand("ccrackrng");
 
         dispatcher.register(literal("ccrackrng")
+            .then(literal("resync")
+                .executes(ctx -> resyncPlayerRNG(DEFAULT_MAX_ADVANCES))
+                .then(argument("maxAdvances", integer(0, MAX_MAX_ADVANCES))
+                    .executes(ctx -> resyncPlayerRNG(getInteger(ctx, "maxAdvances")))))
             .executes(ctx -> crackPlayerRNG(ctx.getSource())));
     }
 
     private static int crackPlayerRNG(ServerCommandSource source) {
         ServerBrandManager.rngWarning();
-        SeedCracker.crack(seed -> {
-            sendFeedback(new TranslatableText("commands.ccrackrng.success", Long.toHexString(seed)));
-            PlayerRandCracker.setSeed(seed);
-            TempRules.playerCrackState = PlayerRandCracker.CrackState.CRACKED;
-        });
+        SeedCracker.crack(CrackRNGCommand::onCracked);
+        return 0;
+    }
+
+    private static int resyncPlayerRNG(int maxAdvances) throws CommandSyntaxException {
+        long[] knownSeeds = PlayerRandCracker.getLastKnownSeeds();
+        if (knownSeeds == null)
+            throw NO_SEED_EXCEPTION.create();
+        if (knownSeeds.length * (maxAdvances + 1L) > MAX_RESYNC_WORK)
+            throw TOO_MUCH_WORK_EXCEPTION.create(knownSeeds.length, MAX_RESYNC_WORK / knownSeeds.length - 1);
+        ServerBrandManager.rngWarning();
+        SeedCracker.resync(knownSeeds, maxAdvances, CrackRNGCommand::onCracked);
         return 0;
     }
 
+    private static void onCracked(long seed) {
+        sendFeedback(new TranslatableText("commands.ccrackrng.success", Long.toHexString(seed)));
+        PlayerRandCracker.setSeed(seed);
+        TempRules.playerCrackState = PlayerRandCracker.CrackState.CRACKED;
+    }
+
 }
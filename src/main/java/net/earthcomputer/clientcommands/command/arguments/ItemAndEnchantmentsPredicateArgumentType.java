@@ -47,9 +47,12 @@ public class ItemAndEnchantmentsPredicateArgumentType implements ArgumentType<It
 
     @Override
     public ItemAndEnchantmentsPredicate parse(StringReader reader) throws CommandSyntaxException {
-        Parser parser = new Parser(reader);
+        Parser parser = new Parser(reader, false);
         parser.parse();
+        return createPredicate(parser);
+    }
 
+    static ItemAndEnchantmentsPredicate createPredicate(Parser parser) {
         Predicate<List<InfoEnchantment>> predicate = enchantments -> {
             for (InfoEnchantment with : parser.with) {
                 boolean found = false;
@@ -80,7 +83,7 @@ public class ItemAndEnchantmentsPredicateArgumentType implements ArgumentType<It
         StringReader reader = new StringReader(builder.getInput());
         reader.setCursor(builder.getStart());
 
-        Parser parser = new Parser(reader);
+        Parser parser = new Parser(reader, false);
         try {
             parser.parse();
         } catch (CommandSyntaxException ignore) {}
@@ -107,16 +110,18 @@ public class ItemAndEnchantmentsPredicateArgumentType implements ArgumentType<It
         }
     }
 
-    private static class Parser {
+    static class Parser {
         private final StringReader reader;
-        private Consumer<SuggestionsBuilder> suggestor;
+        private final boolean stopAtSeparator;
+        Consumer<SuggestionsBuilder> suggestor;
 
         private Item item;
         private List<InfoEnchantment> with = new ArrayList<>();
         private List<InfoEnchantment> without = new ArrayList<>();
 
-        public Parser(StringReader reader) {
+        public Parser(StringReader reader, boolean stopAtSeparator) {
             this.reader = reader;
+            this.stopAtSeparator = stopAtSeparator;
         }
 
         public List<InfoEnchantment> getWith() {
@@ -131,6 +136,8 @@ public class ItemAndEnchantmentsPredicateArgumentType implements ArgumentType<It
             this.item = parseItem();
 
             while (reader.canRead()) {
+                if (stopAtSeparator && reader.peek() == ItemAndEnchantmentsPredicateListArgumentType.SEPARATOR)
+                    break;
                 parseSpace();
                 parseInfoEnchantment();
             }
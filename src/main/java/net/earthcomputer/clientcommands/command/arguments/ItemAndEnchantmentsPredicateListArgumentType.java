@@ -0,0 +1,80 @@
+package net.earthcomputer.clientcommands.command.arguments;
+
+import com.mojang.brigadier.StringReader;
+import com.mojang.brigadier.arguments.ArgumentType;
+import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import com.mojang.brigadier.suggestion.Suggestions;
+import com.mojang.brigadier.suggestion.SuggestionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static net.earthcomputer.clientcommands.command.arguments.ItemAndEnchantmentsPredicateArgumentType.*;
+
+public class ItemAndEnchantmentsPredicateListArgumentType implements ArgumentType<List<ItemAndEnchantmentsPredicate>> {
+
+    static final char SEPARATOR = ',';
+
+    private static final Collection<String> EXAMPLES = Arrays.asList("diamond_sword with sharpness 5, diamond_pickaxe with efficiency 5", "book with mending *");
+
+    private ItemAndEnchantmentsPredicateListArgumentType() {}
+
+    public static ItemAndEnchantmentsPredicateListArgumentType itemAndEnchantmentsPredicates() {
+        return new ItemAndEnchantmentsPredicateListArgumentType();
+    }
+
+    @SuppressWarnings("unchecked")
+    public static List<ItemAndEnchantmentsPredicate> getItemAndEnchantmentsPredicates(CommandContext<?> context, String name) {
+        return (List<ItemAndEnchantmentsPredicate>) context.getArgument(name, List.class);
+    }
+
+    @Override
+    public List<ItemAndEnchantmentsPredicate> parse(StringReader reader) throws CommandSyntaxException {
+        List<ItemAndEnchantmentsPredicate> predicates = new ArrayList<>();
+        while (true) {
+            Parser parser = new Parser(reader, true);
+            parser.parse();
+            predicates.add(createPredicate(parser));
+            if (!reader.canRead())
+                return predicates;
+            reader.expect(SEPARATOR);
+            reader.skipWhitespace();
+        }
+    }
+
+    @Override
+    public <S> CompletableFuture<Suggestions> listSuggestions(CommandContext<S> context, SuggestionsBuilder builder) {
+        StringReader reader = new StringReader(builder.getInput());
+        reader.setCursor(builder.getStart());
+
+        // only the predicate being typed gets suggestions
+        Parser parser;
+        while (true) {
+            parser = new Parser(reader, true);
+            try {
+                parser.parse();
+                if (!reader.canRead())
+                    break;
+                reader.expect(SEPARATOR);
+                reader.skipWhitespace();
+            } catch (CommandSyntaxException ignore) {
+                break;
+            }
+        }
+
+        if (parser.suggestor != null) {
+            parser.suggestor.accept(builder);
+        }
+
+        return builder.buildFuture();
+    }
+
+    @Override
+    public Collection<String> getExamples() {
+        return EXAMPLES;
+    }
+}
@@ -0,0 +1,125 @@
+package net.earthcomputer.clientcommands.features;
+
+import net.earthcomputer.clientcommands.task.AsyncResultTask;
+import net.earthcomputer.clientcommands.task.TaskManager;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * The thread which the crackers run on, so that cracking never blocks the client thread.
+ *
+ * Observations are queued to a single thread, so they are processed in the order they were made. Jobs may still split
+ * their work across the {@link CrackerPool}. Results are handed back to the client thread through the
+ * {@link TaskManager}.
+ */
+public class CrackerExecutor {
+
+    private static ExecutorService executor;
+    private static volatile Progress progress;
+
+    public static synchronized ExecutorService get() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "Cracker Thread");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Runs the job on the cracker thread, then calls the callback on the client thread with its result, or the error
+     * callback with the cause if it threw
+     */
+    public static <T> String submit(String taskName, Supplier<T> job, Consumer<T> callback, Consumer<Throwable> onError) {
+        return whenDone(taskName, CompletableFuture.supplyAsync(job, get()), callback, onError);
+    }
+
+    /**
+     * Calls the callback on the client thread once the future is done, or the error callback with the cause if it
+     * completed exceptionally
+     */
+    public static <T> String whenDone(String taskName, CompletableFuture<T> future, Consumer<T> callback, Consumer<Throwable> onError) {
+        return TaskManager.addTask(taskName, new AsyncResultTask<>(future, callback).onError(onError));
+    }
+
+    /**
+     * Starts tracking the progress of a job, which should be called from the cracker thread
+     *
+     * @param translationKey the name of what is being cracked
+     * @param total the number of things the job will check
+     * @param candidates the number of candidates before the job
+     */
+    public static Progress startProgress(String translationKey, long total, long candidates) {
+        Progress progress = new Progress(translationKey, total, candidates);
+        CrackerExecutor.progress = progress;
+        return progress;
+    }
+
+    /**
+     * Returns the progress of the current job, or null if there's no job in progress
+     */
+    public static Progress getProgress() {
+        return progress;
+    }
+
+    public static class Progress {
+        private final String translationKey;
+        private final long total;
+        private final long startCandidates;
+        private final long startTime = System.nanoTime();
+        private final AtomicLong checked = new AtomicLong();
+        private final AtomicLong candidateChange = new AtomicLong();
+
+        private Progress(String translationKey, long total, long startCandidates) {
+            this.translationKey = translationKey;
+            this.total = total;
+            this.startCandidates = startCandidates;
+        }
+
+        /**
+         * Records that more things were checked, and how the number of candidates changed because of them. May be
+         * called concurrently.
+         */
+        public void add(long checked, long candidateChange) {
+            this.checked.addAndGet(checked);
+            this.candidateChange.addAndGet(candidateChange);
+        }
+
+        public void finish() {
+            if (progress == this)
+                progress = null;
+        }
+
+        public String getTranslationKey() {
+            return translationKey;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public long getChecked() {
+            return checked.get();
+        }
+
+        public long getCandidates() {
+            return startCandidates + candidateChange.get();
+        }
+
+        /**
+         * The number of things checked per second so far
+         */
+        public long getThroughput() {
+            long elapsed = System.nanoTime() - startTime;
+            return elapsed <= 0 ? 0 : checked.get() * 1000000000L / elapsed;
+        }
+    }
+
+}
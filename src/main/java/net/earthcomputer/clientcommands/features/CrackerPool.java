@@ -0,0 +1,29 @@
+package net.earthcomputer.clientcommands.features;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The thread pool which the crackers use to split brute force searches across cores. One core is left free for the
+ * render thread.
+ */
+public class CrackerPool {
+
+    private static final AtomicInteger nextThreadId = new AtomicInteger();
+    private static ForkJoinPool pool;
+
+    public static synchronized ForkJoinPool get() {
+        if (pool == null) {
+            int parallelism = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+            pool = new ForkJoinPool(parallelism, p -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+                thread.setName("Cracker Worker #" + nextThreadId.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }, null, false);
+        }
+        return pool;
+    }
+
+}
@@ -0,0 +1,85 @@
+package net.earthcomputer.clientcommands.features;
+
+import net.earthcomputer.clientcommands.ForgeHooks;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+/**
+ * Caches the bookshelf power around the last enchanting table we used.
+ *
+ * Working out the power looks up to 40 blocks, each through {@link ForgeHooks}, so we only do it again when a block
+ * which could affect it changes. That is any block in the 5x2x5 box around the table, which covers both the
+ * bookshelves and the air gaps between them and the table. Chunks which are loaded or unloaded from packets don't go
+ * through the block update listeners, so the cache is also cleared when a chunk overlapping the box does.
+ */
+public class EnchantPowerCache {
+
+    private static BlockPos tablePos = null;
+    private static int power = -1;
+
+    /**
+     * Returns the bookshelf power around the table, computing it if it isn't cached
+     */
+    public static int getEnchantPower(World world, BlockPos tablePos) {
+        if (power == -1 || !tablePos.equals(EnchantPowerCache.tablePos)) {
+            EnchantPowerCache.tablePos = tablePos.toImmutable();
+            power = computeEnchantPower(world, tablePos);
+        }
+        return power;
+    }
+
+    /**
+     * Returns the cached bookshelf power around the last enchanting table, or -1 if it isn't known
+     */
+    public static int getCachedEnchantPower() {
+        return power;
+    }
+
+    public static void invalidate() {
+        tablePos = null;
+        power = -1;
+    }
+
+    public static void onBlockChange(BlockPos pos, BlockState oldState, BlockState newState) {
+        if (tablePos == null)
+            return;
+        int dy = pos.getY() - tablePos.getY();
+        if (dy >= 0 && dy <= 1 && Math.abs(pos.getX() - tablePos.getX()) <= 2 && Math.abs(pos.getZ() - tablePos.getZ()) <= 2)
+            power = -1;
+    }
+
+    /**
+     * Called when a chunk is loaded or unloaded on the client, which may have changed its blocks without block updates
+     */
+    public static void onChunkChange(int chunkX, int chunkZ) {
+        if (tablePos == null)
+            return;
+        if (chunkX >= (tablePos.getX() - 2) >> 4 && chunkX <= (tablePos.getX() + 2) >> 4
+                && chunkZ >= (tablePos.getZ() - 2) >> 4 && chunkZ <= (tablePos.getZ() + 2) >> 4)
+            power = -1;
+    }
+
+    private static int computeEnchantPower(World world, BlockPos tablePos) {
+        float power = 0;
+
+        for (int dz = -1; dz <= 1; dz++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                if ((dz != 0 || dx != 0) && world.isAir(tablePos.add(dx, 0, dz))
+                        && world.isAir(tablePos.add(dx, 1, dz))) {
+                    power += ForgeHooks.instance().ForgeHooks_getEnchantPower(world, tablePos.add(dx * 2, 0, dz * 2));
+                    power += ForgeHooks.instance().ForgeHooks_getEnchantPower(world, tablePos.add(dx * 2, 1, dz * 2));
+                    if (dx != 0 && dz != 0) {
+                        power += ForgeHooks.instance().ForgeHooks_getEnchantPower(world, tablePos.add(dx * 2, 0, dz));
+                        power += ForgeHooks.instance().ForgeHooks_getEnchantPower(world, tablePos.add(dx * 2, 1, dz));
+                        power += ForgeHooks.instance().ForgeHooks_getEnchantPower(world, tablePos.add(dx, 0, dz * 2));
+                        power += ForgeHooks.instance().ForgeHooks_getEnchantPower(world, tablePos.add(dx, 1, dz * 2));
+                    }
+                }
+            }
+        }
+
+        return (int) power;
+    }
+
+}
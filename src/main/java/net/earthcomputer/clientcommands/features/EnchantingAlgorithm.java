@@ -0,0 +1,166 @@
+package net.earthcomputer.clientcommands.features;
+
+import com.google.common.collect.Lists;
+import net.earthcomputer.multiconnect.api.MultiConnectAPI;
+import net.earthcomputer.multiconnect.api.Protocols;
+import net.minecraft.enchantment.Enchantment;
+import net.minecraft.enchantment.EnchantmentHelper;
+import net.minecraft.enchantment.InfoEnchantment;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.util.WeightedPicker;
+import net.minecraft.util.math.MathHelper;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The version-specific parts of the enchanting algorithm, for the server we're connected to.
+ *
+ * Enchanting has changed between versions which multiconnect can connect to. Instead of checking the protocol
+ * version on every call, the algorithm is resolved once when we connect, and the mixins and the
+ * {@link EnchantmentSimulator} call it directly. Supporting another version means adding another algorithm here.
+ */
+public abstract class EnchantingAlgorithm {
+
+    // TODO: update-sensitive: EnchantmentHelper.getEnchantments and the enchantment weights and compatibilities
+
+    /**
+     * The algorithm of the current Minecraft version
+     */
+    public static final EnchantingAlgorithm LATEST = new Latest();
+    /**
+     * The algorithm of 1.14 to 1.14.2, which recomputes the applicable enchantments after every pick, has different
+     * weights, and allows all protection enchantments together
+     */
+    public static final EnchantingAlgorithm V1_14 = new V1_14();
+
+    private static volatile EnchantingAlgorithm current = LATEST;
+
+    public static EnchantingAlgorithm get() {
+        return current;
+    }
+
+    /**
+     * Resolves the algorithm for the protocol version of a new connection
+     */
+    public static void onConnect() {
+        set(forProtocol(MultiConnectAPI.instance().getProtocolVersion()));
+    }
+
+    /**
+     * Sets the algorithm directly, for when there's no connection to resolve it from
+     */
+    static void set(EnchantingAlgorithm algorithm) {
+        current = algorithm;
+        EnchantmentTables.invalidate();
+    }
+
+    public static EnchantingAlgorithm forProtocol(int protocolVersion) {
+        if (protocolVersion >= Protocols.V1_14 && protocolVersion <= Protocols.V1_14_2)
+            return V1_14;
+        return LATEST;
+    }
+
+    /**
+     * Replaces {@link EnchantmentHelper#getEnchantments(Random, ItemStack, int, boolean)}, or returns null to let
+     * vanilla generate the enchantments
+     */
+    public abstract List<InfoEnchantment> getEnchantments(Random rand, ItemStack stack, int level, boolean allowTreasure);
+
+    /**
+     * Generates the enchantments for the item in the simulator, from its current RNG state
+     */
+    abstract void generateEnchantments(EnchantmentSimulator simulator, Item item, int level);
+
+    /**
+     * Returns the weight of enchantments of the given rarity, or -1 to use the vanilla weight
+     */
+    public int getWeight(Enchantment.Weight weight) {
+        return -1;
+    }
+
+    /**
+     * Whether all protection enchantments can go on the same item
+     */
+    public boolean areProtectionsCompatible() {
+        return false;
+    }
+
+    private static class Latest extends EnchantingAlgorithm {
+        @Override
+        public List<InfoEnchantment> getEnchantments(Random rand, ItemStack stack, int level, boolean allowTreasure) {
+            return null;
+        }
+
+        @Override
+        void generateEnchantments(EnchantmentSimulator simulator, Item item, int level) {
+            simulator.generateEnchantmentsLatest(item, level);
+        }
+    }
+
+    private static class V1_14 extends EnchantingAlgorithm {
+        @Override
+        public List<InfoEnchantment> getEnchantments(Random rand, ItemStack stack, int level, boolean allowTreasure) {
+            List<InfoEnchantment> enchantments = Lists.newArrayList();
+
+            Item item = stack.getItem();
+            int enchantability = item.getEnchantability();
+            if (enchantability <= 0)
+                return enchantments;
+
+            level += 1 + rand.nextInt(enchantability / 4 + 1) + rand.nextInt(enchantability / 4 + 1);
+            float change = (rand.nextFloat() + rand.nextFloat() - 1) * 0.15f;
+            level = MathHelper.clamp(Math.round(level + level * change), 1, Integer.MAX_VALUE);
+
+            List<InfoEnchantment> applicableEnchantments = EnchantmentHelper.getHighestApplicableEnchantmentsAtPower(level, stack, allowTreasure);
+            if (!applicableEnchantments.isEmpty()) {
+                enchantments.add(WeightedPicker.getRandom(rand, applicableEnchantments));
+
+                while (rand.nextInt(50) <= level) {
+                    level = level * 4 / 5 + 1;
+                    applicableEnchantments = EnchantmentHelper.getHighestApplicableEnchantmentsAtPower(level, stack, allowTreasure);
+                    for (InfoEnchantment ench : enchantments) {
+                        EnchantmentHelper.remove(applicableEnchantments, ench);
+                    }
+
+                    if (applicableEnchantments.isEmpty())
+                        break;
+
+                    enchantments.add(WeightedPicker.getRandom(rand, applicableEnchantments));
+
+                    level /= 2;
+                }
+            }
+
+            return enchantments;
+        }
+
+        @Override
+        void generateEnchantments(EnchantmentSimulator simulator, Item item, int level) {
+            simulator.generateEnchantments1140(item, level);
+        }
+
+        @Override
+        public int getWeight(Enchantment.Weight weight) {
+            switch (weight) {
+                case COMMON:
+                    return 30;
+                case UNCOMMON:
+                    return 10;
+                case RARE:
+                    return 3;
+                case VERY_RARE:
+                    return 1;
+                default:
+                    return -1;
+            }
+        }
+
+        @Override
+        public boolean areProtectionsCompatible() {
+            return true;
+        }
+    }
+
+}
@@ -2,6 +2,8 @@ package net.earthcomputer.clientcommands.features;
 
 import net.earthcomputer.clientcommands.ForgeHooks;
 import net.earthcomputer.clientcommands.TempRules;
+import net.earthcomputer.clientcommands.command.ClientCommandManager;
+import net.earthcomputer.clientcommands.task.AsyncResultTask;
 import net.earthcomputer.clientcommands.task.LongTask;
 import net.earthcomputer.clientcommands.task.LongTaskList;
 import net.earthcomputer.clientcommands.task.OneTickTask;
@@ -13,23 +15,23 @@ import net.minecraft.client.resource.language.I18n;
 import net.minecraft.container.EnchantingTableContainer;
 import net.minecraft.container.Slot;
 import net.minecraft.enchantment.Enchantment;
-import net.minecraft.enchantment.EnchantmentHelper;
 import net.minecraft.enchantment.InfoEnchantment;
 import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
-import net.minecraft.item.Items;
 import net.minecraft.server.network.packet.PlayerMoveC2SPacket;
 import net.minecraft.text.LiteralText;
 import net.minecraft.text.TranslatableText;
 import net.minecraft.util.Formatting;
 import net.minecraft.util.StringIdentifiable;
 import net.minecraft.util.math.BlockPos;
-import net.minecraft.util.registry.Registry;
 import net.minecraft.world.World;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 
 public class EnchantmentCracker {
@@ -85,7 +87,68 @@ public class EnchantmentCracker {
      * This section is in charge of rendering the overlay on the enchantment GUI
      */
 
+    // The overlay lines are kept as a render model, which is only rebuilt when something it shows changes, rather
+    // than translating every line and simulating the enchantments every frame. The progress line changes all the time
+    // while cracking, so it's not part of the model.
+    private static final int OVERLAY_KEY_SIZE = 13;
+    private static int[] overlayKey = new int[OVERLAY_KEY_SIZE];
+    private static int[] nextOverlayKey = new int[OVERLAY_KEY_SIZE];
+    private static XpSeedCandidates overlayCandidates;
+    private static Item overlayItem;
+    private static List<String> overlayStateLines;
+    private static List<String> overlayEnchantmentLines;
+
     public static void drawEnchantmentGUIOverlay() {
+        if (!isOverlayModelValid())
+            buildOverlayModel();
+
+        TextRenderer fontRenderer = MinecraftClient.getInstance().textRenderer;
+        int y = 0;
+        for (String line : overlayStateLines) {
+            fontRenderer.draw(line, 0, y, 0xffffff);
+            y += fontRenderer.fontHeight;
+        }
+
+        CrackerExecutor.Progress progress = CrackerExecutor.getProgress();
+        if (progress != null) {
+            fontRenderer.draw(I18n.translate("enchCrack.progress", I18n.translate(progress.getTranslationKey()),
+                    progress.getChecked(), progress.getTotal(), progress.getCandidates(), progress.getThroughput()), 0, y, 0xffffff);
+            y += fontRenderer.fontHeight;
+        }
+
+        for (String line : overlayEnchantmentLines) {
+            fontRenderer.draw(line, 0, y, 0xffffff);
+            y += fontRenderer.fontHeight;
+        }
+    }
+
+    private static boolean isOverlayModelValid() {
+        EnchantingTableContainer enchContainer = (EnchantingTableContainer) MinecraftClient.getInstance().player.container;
+        int[] key = nextOverlayKey;
+        key[0] = TempRules.enchCrackState.ordinal();
+        key[1] = TempRules.playerCrackState.ordinal();
+        // the candidates are either replaced or changed in place along with the generation
+        key[2] = crackGeneration;
+        key[3] = possibleXPSeeds.size();
+        for (int slot = 0; slot < 3; slot++) {
+            key[4 + slot] = enchContainer.enchantmentPower[slot];
+            key[7 + slot] = enchContainer.enchantmentId[slot];
+            key[10 + slot] = enchContainer.enchantmentLevel[slot];
+        }
+        Item item = enchContainer.getSlot(0).getStack().getItem();
+
+        boolean valid = overlayStateLines != null && overlayCandidates == possibleXPSeeds && overlayItem == item
+                && Arrays.equals(key, overlayKey);
+        if (!valid) {
+            nextOverlayKey = overlayKey;
+            overlayKey = key;
+            overlayCandidates = possibleXPSeeds;
+            overlayItem = item;
+        }
+        return valid;
+    }
+
+    private static void buildOverlayModel() {
         CrackState crackState = TempRules.enchCrackState;
 
         List<String> lines = new ArrayList<>();
@@ -96,11 +159,13 @@ public class EnchantmentCracker {
         lines.add("");
 
         if (crackState == CrackState.CRACKED) {
-            lines.add(I18n.translate("enchCrack.xpSeed.one", possibleXPSeeds.iterator().next()));
+            lines.add(I18n.translate("enchCrack.xpSeed.one", possibleXPSeeds.getFirstSeed()));
         } else if (crackState == CrackState.CRACKING) {
             lines.add(I18n.translate("enchCrack.xpSeed.many", possibleXPSeeds.size()));
         }
+        overlayStateLines = lines;
 
+        lines = new ArrayList<>();
         lines.add("");
 
         if (crackState == CrackState.CRACKED) {
@@ -109,22 +174,17 @@ public class EnchantmentCracker {
             lines.add(I18n.translate("enchCrack.clues"));
         }
 
+        EnchantmentSimulator simulator = crackState == CrackState.CRACKED ? new EnchantmentSimulator() : null;
         for (int slot = 0; slot < 3; slot++) {
             lines.add(I18n.translate("enchCrack.slot", slot + 1));
-            List<InfoEnchantment> enchs = getEnchantmentsInTable(slot);
+            List<InfoEnchantment> enchs = getEnchantmentsInTable(simulator, slot);
             if (enchs != null) {
                 for (InfoEnchantment ench : enchs) {
                     lines.add("   " + ench.enchantment.getName(ench.level).getString());
                 }
             }
         }
-
-        TextRenderer fontRenderer = MinecraftClient.getInstance().textRenderer;
-        int y = 0;
-        for (String line : lines) {
-            fontRenderer.draw(line, 0, y, 0xffffff);
-            y += fontRenderer.fontHeight;
-        }
+        overlayEnchantmentLines = lines;
     }
 
     // LOGIC
@@ -132,26 +192,59 @@ public class EnchantmentCracker {
      * This section is in charge of the logic of the cracking
      */
 
-    static Set<Integer> possibleXPSeeds = new HashSet<>(1 << 20);
+    static XpSeedCandidates possibleXPSeeds = new XpSeedCandidates();
     private static int firstXpSeed;
     public static BlockPos enchantingTablePos = null;
     private static boolean doneEnchantment = false;
 
+    // the latest observation being processed on the cracker thread, which the next observation builds on
+    private static CompletableFuture<XpSeedCandidates> pendingCrack = null;
+    // changed whenever the candidates are replaced on the client thread, so that stale cracking results are dropped
+    private static int crackGeneration = 0;
+
+    private static final int PROBE_SAMPLE_SIZE = 4096;
+
     public static void resetCracker() {
         TempRules.enchCrackState = CrackState.UNCRACKED;
+        cancelPendingCrack();
         possibleXPSeeds.clear();
     }
 
-    private static void prepareForNextEnchantmentSeedCrack(int serverReportedXPSeed) {
-        serverReportedXPSeed &= 0x0000fff0;
-        for (int highBits = 0; highBits < 65536; highBits++) {
-            for (int low4Bits = 0; low4Bits < 16; low4Bits++) {
-                possibleXPSeeds.add((highBits << 16) | serverReportedXPSeed | low4Bits);
-            }
+    private static void cancelPendingCrack() {
+        crackGeneration++;
+        pendingCrack = null;
+    }
+
+    static void setCrackedXpSeed(int xpSeed) {
+        cancelPendingCrack();
+        possibleXPSeeds.set(xpSeed);
+        XpSeedStore.setXpSeed(xpSeed);
+    }
+
+    /**
+     * Checks the XP seed stored from an earlier session against the first observation, which is much cheaper than
+     * cracking it again. Returns whether the stored seed fits, in which case the XP seed is cracked.
+     */
+    private static boolean tryStoredXpSeed(int serverReportedXPSeed, SeedInfoFilter.Observation observation) {
+        OptionalInt storedXpSeed = XpSeedStore.getXpSeed();
+        if (!storedXpSeed.isPresent())
+            return false;
+        int xpSeed = storedXpSeed.getAsInt();
+        if ((xpSeed & XpSeedCandidates.KNOWN_BITS_MASK) != (serverReportedXPSeed & XpSeedCandidates.KNOWN_BITS_MASK)
+                || !new SeedInfoFilter(observation, new SeedInfoFilter.Stats()).test(xpSeed)) {
+            XpSeedStore.remove();
+            return false;
         }
+        setCrackedXpSeed(xpSeed);
+        TempRules.enchCrackState = CrackState.CRACKED;
+        addPlayerRNGInfo(xpSeed);
+        return true;
     }
 
     public static void addEnchantmentSeedInfo(World world, EnchantingTableContainer container) {
+        // the XP seed may tell us which of the player RNG hypotheses is right, in which case it's cracked
+        PlayerRandCracker.onXpSeedShown(container.getSeed());
+
         CrackState crackState = TempRules.enchCrackState;
         if (crackState == CrackState.CRACKED) {
             return;
@@ -166,71 +259,223 @@ public class EnchantmentCracker {
             return;
         BlockPos tablePos = enchantingTablePos;
 
+        int power = EnchantPowerCache.getEnchantPower(world, tablePos);
+
+        SeedInfoFilter.Observation observation = new SeedInfoFilter.Observation(world, tablePos, power, itemToEnchant,
+                container.enchantmentPower.clone(), container.enchantmentId.clone(), container.enchantmentLevel.clone());
+
+        if (crackState == CrackState.UNCRACKED && tryStoredXpSeed(container.getSeed(), observation))
+            return;
+
+        CompletableFuture<XpSeedCandidates> previous;
         if (crackState == CrackState.UNCRACKED) {
             TempRules.enchCrackState = CrackState.CRACKING;
-            prepareForNextEnchantmentSeedCrack(container.getSeed());
+            cancelPendingCrack();
+            int serverReportedXPSeed = container.getSeed();
+            previous = CompletableFuture.supplyAsync(() -> {
+                XpSeedCandidates candidates = new XpSeedCandidates();
+                candidates.fill(serverReportedXPSeed);
+                return candidates;
+            }, CrackerExecutor.get());
+        } else if (pendingCrack != null && !pendingCrack.isCompletedExceptionally()) {
+            // the previous observation hasn't been applied yet, filter its result further
+            previous = pendingCrack.thenApply(XpSeedCandidates::copy);
+        } else {
+            previous = CompletableFuture.completedFuture(possibleXPSeeds.copy());
         }
-        int power = getEnchantPower(world, tablePos);
 
-        Random rand = new Random();
-        int[] actualEnchantLevels = container.enchantmentPower;
-        int[] actualEnchantmentClues = container.enchantmentId;
-        int[] actualLevelClues = container.enchantmentLevel;
+        // brute force the possible seeds on the cracker thread
+        CompletableFuture<XpSeedCandidates> crack = previous.thenApplyAsync(candidates -> {
+            CrackerExecutor.Progress progress = CrackerExecutor.startProgress("enchCrack.progress.xpSeed", XpSeedCandidates.CANDIDATE_COUNT, candidates.size());
+            SeedInfoFilter.Stats stats = new SeedInfoFilter.Stats();
+            try {
+                if (TempRules.parallelEnchantmentCracking)
+                    candidates.retainAllParallel(() -> new SeedInfoFilter(observation, stats), CrackerPool.get(), progress);
+                else
+                    candidates.retainAll(new SeedInfoFilter(observation, stats), progress);
+            } finally {
+                progress.finish();
+            }
+            LOGGER.debug("Enchantment levels rejected {} XP seeds, enchantment clues rejected {}, {} left",
+                    stats.levelRejections.get(), stats.clueRejections.get(), candidates.size());
+            return candidates;
+        }, CrackerExecutor.get());
+        pendingCrack = crack;
+
+        int generation = crackGeneration;
+        CrackerExecutor.whenDone("enchCrack", crack, candidates -> {
+            if (generation != crackGeneration)
+                return;
+            if (pendingCrack == crack)
+                pendingCrack = null;
+            possibleXPSeeds = candidates;
+
+            // test the outcome, see if we need to change state
+            if (possibleXPSeeds.size() == 0) {
+                TempRules.enchCrackState = CrackState.UNCRACKED;
+                LOGGER.warn(
+                        "Invalid enchantment seed information. Has the server got unknown mods, is there a desync, or is the client just bugged?");
+            } else if (possibleXPSeeds.size() == 1 && TempRules.enchCrackState == CrackState.CRACKING) {
+                TempRules.enchCrackState = CrackState.CRACKED;
+                XpSeedStore.setXpSeed(possibleXPSeeds.getFirstSeed());
+                addPlayerRNGInfo(possibleXPSeeds.getFirstSeed());
+            }
+        }, e -> {
+            if (generation != crackGeneration)
+                return;
+            // the candidates may have been partly filtered, so start again from scratch
+            resetCracker();
+            ClientCommandManager.sendBackgroundError(e);
+        });
+    }
+
+    /**
+     * Tests whether an XP seed is consistent with what the server showed us in the enchanting table. Each instance has
+     * its own RNG, so when filtering in parallel each worker gets its own filter.
+     *
+     * The enchantment levels are checked first, which rejects most seeds for the price of a few RNG calls. Only the
+     * seeds with the right levels go on to have their enchantment clues generated.
+     */
+    static class SeedInfoFilter implements XpSeedCandidates.TwoPhaseFilter {
+        private final Observation observation;
+        private final Stats stats;
+        private final EnchantmentSimulator simulator = new EnchantmentSimulator();
+
+        SeedInfoFilter(Observation observation, Stats stats) {
+            this.observation = observation;
+            this.stats = stats;
+        }
 
-        // brute force the possible seeds
-        Iterator<Integer> xpSeedItr = possibleXPSeeds.iterator();
-        seedLoop: while (xpSeedItr.hasNext()) {
-            int xpSeed = xpSeedItr.next();
-            rand.setSeed(xpSeed);
+        @Override
+        public boolean testFirstPhase(int xpSeed) {
+            Observation obs = this.observation;
+            EnchantmentSimulator simulator = this.simulator;
+            simulator.setSeed(xpSeed);
 
             // check enchantment levels match
+            int mismatches = 0;
             for (int slot = 0; slot < 3; slot++) {
-                int level = EnchantmentHelper.calculateEnchantmentPower(rand, slot, power, itemToEnchant);
+                int level = simulator.calculateEnchantmentPower(slot, obs.power, obs.enchantability);
                 if (level < slot + 1) {
                     level = 0;
                 }
-                level = ForgeHooks.instance().ForgeEventFactory_onEnchantmentLevelSet(world, tablePos, slot, power, itemToEnchant, level);
-                if (level != actualEnchantLevels[slot]) {
-                    xpSeedItr.remove();
-                    continue seedLoop;
-                }
+                if (obs.levelTable != null)
+                    level = obs.levelTable[slot][level];
+                mismatches |= level ^ obs.enchantLevels[slot];
             }
+            return mismatches == 0;
+        }
+
+        @Override
+        public boolean testSecondPhase(int xpSeed) {
+            Observation obs = this.observation;
+            EnchantmentSimulator simulator = this.simulator;
 
             // generate enchantment clues and see if they match
             for (int slot = 0; slot < 3; slot++) {
-                if (actualEnchantLevels[slot] > 0) {
-                    List<InfoEnchantment> enchantments = getEnchantmentList(rand, xpSeed, itemToEnchant, slot,
-                            actualEnchantLevels[slot]);
-                    if (enchantments == null || enchantments.isEmpty()) {
+                if (obs.enchantLevels[slot] > 0) {
+                    int enchantmentCount = simulator.generateEnchantments(obs.item, xpSeed, slot, obs.enchantLevels[slot]);
+                    if (enchantmentCount == 0) {
                         // check that there is indeed no enchantment clue
-                        if (actualEnchantmentClues[slot] != -1 || actualLevelClues[slot] != -1) {
-                            xpSeedItr.remove();
-                            continue seedLoop;
+                        if (obs.enchantmentClues[slot] != -1 || obs.levelClues[slot] != -1) {
+                            return false;
                         }
                     } else {
                         // check the right enchantment clue was generated
-                        InfoEnchantment clue = enchantments.get(rand.nextInt(enchantments.size()));
-                        if (Registry.ENCHANTMENT.getRawId(clue.enchantment) != actualEnchantmentClues[slot]
-                                || clue.level != actualLevelClues[slot]) {
-                            xpSeedItr.remove();
-                            continue seedLoop;
+                        int clue = simulator.nextInt(enchantmentCount);
+                        if (simulator.getEnchantmentId(clue) != obs.enchantmentClues[slot]
+                                || simulator.getEnchantmentLevel(clue) != obs.levelClues[slot]) {
+                            return false;
                         }
                     }
                 }
             }
+
+            return true;
         }
 
-        // test the outcome, see if we need to change state
-        if (possibleXPSeeds.size() == 0) {
-            TempRules.enchCrackState = CrackState.UNCRACKED;
-            LOGGER.warn(
-                    "Invalid enchantment seed information. Has the server got unknown mods, is there a desync, or is the client just bugged?");
-        } else if (possibleXPSeeds.size() == 1) {
-            TempRules.enchCrackState = CrackState.CRACKED;
-            addPlayerRNGInfo(possibleXPSeeds.iterator().next());
+        @Override
+        public void recordRejections(int firstPhase, int secondPhase) {
+            stats.levelRejections.addAndGet(firstPhase);
+            stats.clueRejections.addAndGet(secondPhase);
+        }
+
+        /**
+         * How many candidates each phase rejected, shared between the filters of one observation
+         */
+        static class Stats {
+            final AtomicLong levelRejections = new AtomicLong();
+            final AtomicLong clueRejections = new AtomicLong();
+        }
+
+        /**
+         * A snapshot of the enchanting table, so that workers don't read the container while it's being updated. It
+         * must be made on the client thread, which is where the Forge level hook is called.
+         */
+        static class Observation {
+            final int power;
+            // the Forge level hook for each slot and level, or null if there's no hook
+            final int[][] levelTable;
+            final Item item;
+            final int enchantability;
+            final int[] enchantLevels;
+            final int[] enchantmentClues;
+            final int[] levelClues;
+
+            Observation(World world, BlockPos tablePos, int power, ItemStack itemToEnchant, int[] enchantLevels, int[] enchantmentClues, int[] levelClues) {
+                this.power = power;
+                this.levelTable = ForgeHooks.instance().getEnchantmentLevelTable(world, tablePos, power, itemToEnchant);
+                this.item = itemToEnchant.getItem();
+                this.enchantability = item.getEnchantability();
+                this.enchantLevels = enchantLevels;
+                this.enchantmentClues = enchantmentClues;
+                this.levelClues = levelClues;
+            }
         }
     }
 
+    /**
+     * Scores each enchantable item in the player's inventory by how many XP seed candidates would be left after
+     * viewing it in the enchanting table. The scoring runs on the cracker pool, and once it's done the callback is
+     * called on the client thread with the scores, best first. Returns false if there's nothing to score.
+     */
+    public static boolean suggestProbeItems(Consumer<List<ProbeSelection.Score>> callback) {
+        ClientPlayerEntity player = MinecraftClient.getInstance().player;
+        if (enchantingTablePos == null || TempRules.enchCrackState == CrackState.CRACKED)
+            return false;
+
+        List<ItemStack> stacks = new ArrayList<>();
+        Set<Item> seenItems = new HashSet<>();
+        for (ItemStack stack : player.inventory.main) {
+            if (!stack.isEmpty() && stack.isEnchantable() && seenItems.add(stack.getItem()))
+                stacks.add(stack.copy());
+        }
+        if (stacks.isEmpty())
+            return false;
+
+        int[] sample;
+        int candidates;
+        if (TempRules.enchCrackState == CrackState.UNCRACKED) {
+            // any XP seed is possible, and the first view only leaves the ones matching the bits the server sends
+            Random rand = new Random();
+            sample = new int[PROBE_SAMPLE_SIZE];
+            for (int i = 0; i < sample.length; i++)
+                sample[i] = rand.nextInt();
+            candidates = XpSeedCandidates.CANDIDATE_COUNT;
+        } else {
+            sample = possibleXPSeeds.sample(PROBE_SAMPLE_SIZE);
+            candidates = possibleXPSeeds.size();
+        }
+        if (sample.length == 0)
+            return false;
+
+        World world = player.world;
+        int power = EnchantPowerCache.getEnchantPower(world, enchantingTablePos);
+        ProbeSelection selection = new ProbeSelection(world, enchantingTablePos, power, stacks, sample, candidates);
+        CrackerExecutor.whenDone("probeSelection", CompletableFuture.supplyAsync(selection::run, CrackerPool.get()), callback, ClientCommandManager::sendBackgroundError);
+        return true;
+    }
+
     private static void addPlayerRNGInfo(int enchantmentSeed) {
         if (TempRules.playerCrackState == PlayerRandCracker.CrackState.ENCH_CRACKING_1) {
             firstXpSeed = enchantmentSeed;
@@ -247,7 +492,7 @@ public class EnchantmentCracker {
             long seed = (7847617 * a - 18218081 * b) & PlayerRandCracker.MASK;
             if ((int) (seed >>> 16) != firstXpSeed)
                 valid = false;
-            seed = (seed * PlayerRandCracker.MULTIPLIER + PlayerRandCracker.ADDEND) & PlayerRandCracker.MASK;
+            seed = Lcg.next(seed);
             if ((int) (seed >>> 16) != enchantmentSeed)
                 valid = false;
             if (valid) {
@@ -263,23 +508,33 @@ public class EnchantmentCracker {
 
     public static void onEnchantedItem() {
         if (TempRules.playerCrackState.knowsSeed()) {
-            possibleXPSeeds.clear();
-            possibleXPSeeds.add(PlayerRandCracker.nextInt());
+            setCrackedXpSeed(PlayerRandCracker.nextInt());
             TempRules.playerCrackState = PlayerRandCracker.CrackState.CRACKED;
             TempRules.enchCrackState = CrackState.CRACKED;
         } else if (TempRules.playerCrackState == PlayerRandCracker.CrackState.HALF_CRACKED) {
+            cancelPendingCrack();
             possibleXPSeeds.clear();
+            XpSeedStore.remove();
             TempRules.playerCrackState = PlayerRandCracker.CrackState.ENCH_CRACKING_2;
             TempRules.enchCrackState = CrackState.UNCRACKED;
         } else if ((TempRules.playerCrackState == PlayerRandCracker.CrackState.UNCRACKED
                 || TempRules.playerCrackState == PlayerRandCracker.CrackState.ENCH_CRACKING_1
                 || TempRules.playerCrackState == PlayerRandCracker.CrackState.ENCH_CRACKING_2)) {
+            cancelPendingCrack();
             possibleXPSeeds.clear();
+            XpSeedStore.remove();
             TempRules.playerCrackState = PlayerRandCracker.CrackState.ENCH_CRACKING_1;
             TempRules.enchCrackState = CrackState.UNCRACKED;
+        } else if (TempRules.playerCrackState == PlayerRandCracker.CrackState.UNCERTAIN) {
+            cancelPendingCrack();
+            possibleXPSeeds.clear();
+            XpSeedStore.remove();
+            PlayerRandCracker.onEnchantedItemUncertain();
+            TempRules.enchCrackState = CrackState.UNCRACKED;
         } else {
             PlayerRandCracker.onUnexpectedItemEnchant();
             TempRules.enchCrackState = CrackState.UNCRACKED;
+            XpSeedStore.remove();
         }
         doneEnchantment = true;
     }
@@ -290,67 +545,78 @@ public class EnchantmentCracker {
      * seed
      */
 
-    public static ManipulateResult manipulateEnchantments(Item item, Predicate<List<InfoEnchantment>> enchantmentsPredicate, boolean simulate) {
-        ClientPlayerEntity player = MinecraftClient.getInstance().player;
-
-        ItemStack stack = new ItemStack(item);
+    /**
+     * Searches for the number of item throws needed to get the wanted enchantments. The search runs on the cracker
+     * pool and reports its progress in the action bar, and once it's done the callback is called on the client
+     * thread with the result, or null if the enchantments couldn't be found. Unless simulating, the manipulation is
+     * then started.
+     */
+    public static void manipulateEnchantments(Item item, Predicate<List<InfoEnchantment>> enchantmentsPredicate, boolean simulate, Consumer<ManipulateResult> callback) {
+        boolean xpSeedKnown = TempRules.enchCrackState == CrackState.CRACKED;
+        int xpSeed = xpSeedKnown ? possibleXPSeeds.getFirstSeed() : 0;
         long seed = PlayerRandCracker.getSeed();
-        // -2: not found; -1: no dummy enchantment needed; >= 0: number of times needed
-        // to throw out item before dummy enchantment
-        int timesNeeded = -2;
-        int bookshelvesNeeded = 0;
-        int slot = 0;
-        List<InfoEnchantment> enchantments = null;
-        int[] enchantLevels = new int[3];
-        outerLoop:
-        for (int i = TempRules.enchCrackState == CrackState.CRACKED ? -1 : 0;
-             i < (TempRules.playerCrackState.knowsSeed() ? TempRules.maxEnchantItemThrows : 0);
-             i++) {
-            int xpSeed = i == -1 ?
-                    possibleXPSeeds.iterator().next()
-                    : (int) (((seed * PlayerRandCracker.MULTIPLIER + PlayerRandCracker.ADDEND) & PlayerRandCracker.MASK) >>> 16);
-            Random rand = new Random();
-            for (bookshelvesNeeded = 0; bookshelvesNeeded <= 15; bookshelvesNeeded++) {
-                rand.setSeed(xpSeed);
-                for (slot = 0; slot < 3; slot++) {
-                    int level = EnchantmentHelper.calculateEnchantmentPower(rand, slot, bookshelvesNeeded, stack);
-                    if (level < slot + 1) {
-                        level = 0;
-                    }
-                    enchantLevels[slot] = level;
-                }
-                for (slot = 0; slot < 3; slot++) {
-                    enchantments = getEnchantmentList(rand, xpSeed, stack, slot,
-                            enchantLevels[slot]);
-                    if (enchantmentsPredicate.test(enchantments)) {
-                        timesNeeded = i;
-                        break outerLoop;
-                    }
-                }
-            }
+        int maxThrows = TempRules.playerCrackState.knowsSeed() ? TempRules.maxEnchantItemThrows : 0;
 
-            if (i != -1) {
-                for (int j = 0; j < 4; j++) {
-                    seed = (seed * PlayerRandCracker.MULTIPLIER + PlayerRandCracker.ADDEND) & PlayerRandCracker.MASK;
-                }
+        ManipulationSearch search = new ManipulationSearch(item, enchantmentsPredicate, xpSeedKnown, xpSeed, PlayerRandCracker.getLookahead(), maxThrows);
+        CompletableFuture<ManipulateResult> future = CompletableFuture.supplyAsync(search::run, CrackerPool.get());
+
+        TaskManager.addTask("enchantmentSearch", new AsyncResultTask<>(future, result -> {
+            if (result != null && result.getItemThrows() >= 0 && PlayerRandCracker.getSeed() != seed) {
+                ClientCommandManager.sendError(new TranslatableText("enchCrack.search.seedChanged"));
+                return;
             }
-        }
-        if (timesNeeded == -2) {
-            return null;
-        }
+            if (result != null && !simulate)
+                startManipulation(result);
+            callback.accept(result);
+        }).onTick(() -> MinecraftClient.getInstance().inGameHud.setOverlayMessage(
+                new TranslatableText("enchCrack.search.progress", search.getThrowsChecked(), search.getMaxThrows()), false))
+                .onCancel(search::cancel)
+                .onError(ClientCommandManager::sendBackgroundError));
+    }
 
-        if (simulate) {
-            return new ManipulateResult(timesNeeded, bookshelvesNeeded, slot, enchantments);
-        }
+    /**
+     * Simulates the enchantments the item can get over the next item throws, for every bookshelf count and slot. The
+     * simulation runs on the cracker pool and reports its progress in the action bar, and once it's done the callback
+     * is called on the client thread with the distribution.
+     */
+    public static void enchantmentDistribution(Item item, Predicate<List<InfoEnchantment>> enchantmentsPredicate, Consumer<EnchantmentDistribution> callback) {
+        EnchantmentDistribution distribution = new EnchantmentDistribution(item, enchantmentsPredicate, PlayerRandCracker.getLookahead(), TempRules.maxEnchantItemThrows);
+        CompletableFuture<EnchantmentDistribution> future = CompletableFuture.supplyAsync(distribution::run, CrackerPool.get());
+
+        TaskManager.addTask("enchantmentSearch", new AsyncResultTask<>(future, callback)
+                .onTick(() -> MinecraftClient.getInstance().inGameHud.setOverlayMessage(
+                        new TranslatableText("enchCrack.search.progress", distribution.getThrowsChecked(), distribution.getMaxThrows()), false))
+                .onCancel(distribution::cancel)
+                .onError(ClientCommandManager::sendBackgroundError));
+    }
 
+    private static void startManipulation(ManipulateResult result) {
         LongTaskList taskList = new LongTaskList();
-        if (timesNeeded != -1) {
-            if (timesNeeded != 0) {
-                player.refreshPositionAndAngles(player.getX(), player.getY(), player.getZ(), player.yaw, 90);
-                // sync rotation to server before we throw any items
-                player.networkHandler.sendPacket(new PlayerMoveC2SPacket.LookOnly(player.yaw, 90, player.onGround));
-                TempRules.playerCrackState = PlayerRandCracker.CrackState.MANIPULATING_ENCHANTMENTS;
+        addManipulationTasks(taskList, null, result);
+        TaskManager.addTask("enchantmentCracker", taskList);
+    }
+
+    /**
+     * Adds the tasks to get the enchantment seed of the result to the task list. If the item is not null, it is
+     * mentioned in the instructions to the player.
+     */
+    private static void addManipulationTasks(LongTaskList taskList, Item item, ManipulateResult result) {
+        ClientPlayerEntity player = MinecraftClient.getInstance().player;
+        int timesNeeded = result.getItemThrows();
+
+        taskList.addTask(new OneTickTask() {
+            @Override
+            public void run() {
+                if (timesNeeded > 0) {
+                    player.refreshPositionAndAngles(player.getX(), player.getY(), player.getZ(), player.yaw, 90);
+                    // sync rotation to server before we throw any items
+                    player.networkHandler.sendPacket(new PlayerMoveC2SPacket.LookOnly(player.yaw, 90, player.onGround));
+                    TempRules.playerCrackState = PlayerRandCracker.CrackState.MANIPULATING_ENCHANTMENTS;
+                }
+                doneEnchantment = true;
             }
+        });
+        if (timesNeeded != -1) {
             for (int i = 0; i < timesNeeded; i++) {
                 // throw the item once it's in the inventory
                 taskList.addTask(new LongTask() {
@@ -413,68 +679,102 @@ public class EnchantmentCracker {
                 }
             });
         }
-        final int bookshelvesNeeded_f = bookshelvesNeeded;
-        final int slot_f = slot;
-        doneEnchantment = true;
+        final int bookshelvesNeeded_f = result.getBookshelves();
+        final int slot_f = result.getSlot();
         taskList.addTask(new OneTickTask() {
             @Override
             public void run() {
                 if (TempRules.enchCrackState == CrackState.CRACKED && doneEnchantment) {
                     player.sendMessage(new LiteralText(Formatting.BOLD + I18n.translate("enchCrack.insn.ready")));
+                    if (item != null)
+                        player.sendMessage(new TranslatableText("enchCrack.insn.item", item.getName()));
                     player.sendMessage(new TranslatableText("enchCrack.insn.bookshelves", bookshelvesNeeded_f));
+                    int currentBookshelves = EnchantPowerCache.getCachedEnchantPower();
+                    if (currentBookshelves != -1 && currentBookshelves != bookshelvesNeeded_f)
+                        player.sendMessage(new TranslatableText("enchCrack.insn.bookshelves.current", currentBookshelves));
                     player.sendMessage(new TranslatableText("enchCrack.insn.slot", slot_f + 1));
                 }
             }
         });
+    }
 
-        TaskManager.addTask("enchantmentCracker", taskList);
+    /**
+     * Plans the enchantment manipulation for several items at once. The planning runs on the cracker pool and reports
+     * its progress in the action bar, and once it's done the callback is called on the client thread with the steps
+     * of the plan in order, or null if no plan was found. Unless simulating, the whole plan is then started as one
+     * task list.
+     */
+    public static void planEnchantments(List<Item> items, List<Predicate<List<InfoEnchantment>>> enchantmentsPredicates, boolean simulate, Consumer<List<PlanStep>> callback) {
+        boolean xpSeedKnown = TempRules.enchCrackState == CrackState.CRACKED;
+        int xpSeed = xpSeedKnown ? possibleXPSeeds.getFirstSeed() : 0;
+        long seed = PlayerRandCracker.getSeed();
 
-        return new ManipulateResult(timesNeeded, bookshelvesNeeded, slot, enchantments);
+        EnchantmentPlanner planner = new EnchantmentPlanner(items, enchantmentsPredicates, xpSeedKnown, xpSeed, seed, TempRules.maxEnchantItemThrows);
+        CompletableFuture<List<PlanStep>> future = CompletableFuture.supplyAsync(planner::run, CrackerPool.get());
+
+        TaskManager.addTask("enchantmentSearch", new AsyncResultTask<>(future, plan -> {
+            if (plan != null && PlayerRandCracker.getSeed() != seed) {
+                ClientCommandManager.sendError(new TranslatableText("enchCrack.search.seedChanged"));
+                return;
+            }
+            if (plan != null && !simulate)
+                startPlan(plan);
+            callback.accept(plan);
+        }).onTick(() -> MinecraftClient.getInstance().inGameHud.setOverlayMessage(
+                new TranslatableText("enchCrack.plan.progress", planner.getPositionsChecked(), planner.getHorizon()), false))
+                .onCancel(planner::cancel)
+                .onError(ClientCommandManager::sendBackgroundError));
     }
 
-    // MISCELLANEOUS HELPER METHODS & ENCHANTING SIMULATION
+    private static void startPlan(List<PlanStep> plan) {
+        LongTaskList taskList = new LongTaskList();
+        for (int i = 0; i < plan.size(); i++) {
+            PlanStep step = plan.get(i);
+            addManipulationTasks(taskList, step.getItem(), step.getResult());
+            if (i != plan.size() - 1) {
+                // wait for the real enchantment before manipulating for the next item
+                taskList.addTask(new LongTask() {
+                    @Override
+                    public void initialize() {
+                        doneEnchantment = false;
+                    }
 
-    public static boolean isEnchantingPredictionEnabled() {
-        return TempRules.getEnchantingPrediction();
-    }
+                    @Override
+                    public boolean condition() {
+                        if (!TempRules.playerCrackState.knowsSeed()) {
+                            taskList._break();
+                            return false;
+                        }
+                        return !doneEnchantment;
+                    }
 
-    private static int getEnchantPower(World world, BlockPos tablePos) {
-        float power = 0;
-
-        for (int dz = -1; dz <= 1; dz++) {
-            for (int dx = -1; dx <= 1; dx++) {
-                if ((dz != 0 || dx != 0) && world.isAir(tablePos.add(dx, 0, dz))
-                        && world.isAir(tablePos.add(dx, 1, dz))) {
-                    power += ForgeHooks.instance().ForgeHooks_getEnchantPower(world, tablePos.add(dx * 2, 0, dz * 2));
-                    power += ForgeHooks.instance().ForgeHooks_getEnchantPower(world, tablePos.add(dx * 2, 1, dz * 2));
-                    if (dx != 0 && dz != 0) {
-                        power += ForgeHooks.instance().ForgeHooks_getEnchantPower(world, tablePos.add(dx * 2, 0, dz));
-                        power += ForgeHooks.instance().ForgeHooks_getEnchantPower(world, tablePos.add(dx * 2, 1, dz));
-                        power += ForgeHooks.instance().ForgeHooks_getEnchantPower(world, tablePos.add(dx, 0, dz * 2));
-                        power += ForgeHooks.instance().ForgeHooks_getEnchantPower(world, tablePos.add(dx, 1, dz * 2));
+                    @Override
+                    public void increment() {
                     }
-                }
+
+                    @Override
+                    public void body() {
+                        scheduleDelay();
+                    }
+                });
             }
         }
-
-        return (int) power;
+        TaskManager.addTask("enchantmentCracker", taskList);
     }
 
-    private static List<InfoEnchantment> getEnchantmentList(Random rand, int xpSeed, ItemStack stack, int enchantSlot,
-                                                            int level) {
-        rand.setSeed(xpSeed + enchantSlot);
-        List<InfoEnchantment> list = EnchantmentHelper.getEnchantments(rand, stack, level, false);
-
-        if (stack.getItem() == Items.BOOK && list.size() > 1) {
-            list.remove(rand.nextInt(list.size()));
-        }
+    // MISCELLANEOUS HELPER METHODS & ENCHANTING SIMULATION
 
-        return list;
+    public static boolean isEnchantingPredictionEnabled() {
+        return TempRules.getEnchantingPrediction();
     }
 
     // Same as above method, except does not assume the seed has been cracked. If it
     // hasn't returns the clue given by the server
     public static List<InfoEnchantment> getEnchantmentsInTable(int slot) {
+        return getEnchantmentsInTable(TempRules.enchCrackState == CrackState.CRACKED ? new EnchantmentSimulator() : null, slot);
+    }
+
+    private static List<InfoEnchantment> getEnchantmentsInTable(EnchantmentSimulator simulator, int slot) {
         CrackState crackState = TempRules.enchCrackState;
         EnchantingTableContainer enchContainer = (EnchantingTableContainer) MinecraftClient.getInstance().player.container;
 
@@ -492,11 +792,11 @@ public class EnchantmentCracker {
             }
         } else {
             // return the enchantments using our cracked seed
-            Random rand = new Random();
-            int xpSeed = possibleXPSeeds.iterator().next();
+            int xpSeed = possibleXPSeeds.getFirstSeed();
             ItemStack enchantingStack = enchContainer.getSlot(0).getStack();
             int enchantLevels = enchContainer.enchantmentPower[slot];
-            return getEnchantmentList(rand, xpSeed, enchantingStack, slot, enchantLevels);
+            simulator.generateEnchantments(enchantingStack.getItem(), xpSeed, slot, enchantLevels);
+            return simulator.copyEnchantments();
         }
     }
 
@@ -530,6 +830,24 @@ public class EnchantmentCracker {
         }
     }
 
+    public static class PlanStep {
+        private final Item item;
+        private final ManipulateResult result;
+
+        public PlanStep(Item item, ManipulateResult result) {
+            this.item = item;
+            this.result = result;
+        }
+
+        public Item getItem() {
+            return item;
+        }
+
+        public ManipulateResult getResult() {
+            return result;
+        }
+    }
+
     public static enum CrackState implements StringIdentifiable {
         UNCRACKED("uncracked"), CRACKED("cracked"), CRACKING("cracking");
 
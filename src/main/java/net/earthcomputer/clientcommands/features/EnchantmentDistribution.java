@@ -0,0 +1,346 @@
+package net.earthcomputer.clientcommands.features;
+
+import net.minecraft.enchantment.InfoEnchantment;
+import net.minecraft.item.Item;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Counts the enchantments an item can get over the next item throws, for every bookshelf count and slot.
+ *
+ * For each throw count, the XP seed a dummy enchantment would generate is simulated with 0 to 15 bookshelves in all
+ * three slots. Each outcome is packed into a long, so the simulation pass allocates nothing per outcome, and counted in
+ * a histogram per bookshelf count and slot. The throw counts are split into ranges which are simulated in parallel on
+ * the {@link CrackerPool}, and the histograms of each range are merged into the result as they finish.
+ */
+public class EnchantmentDistribution {
+
+    private static final int CHUNK_SIZE = 1024;
+    private static final int CELLS = 16 * 3;
+
+    // an outcome is packed as up to 7 sorted 9-bit codes of (id << 3 | level)
+    private static final int CODE_BITS = 9;
+    private static final int MAX_PACKED_ENCHANTMENTS = 7;
+    /**
+     * The outcome where the slot isn't available at all
+     */
+    private static final long UNAVAILABLE = -2;
+    /**
+     * The outcome which couldn't be packed, which can only happen with modded enchantments
+     */
+    private static final long UNKNOWN = -3;
+
+    private final Item item;
+    private final int enchantability;
+    private final Predicate<List<InfoEnchantment>> enchantmentsPredicate;
+    private final PlayerRandLookahead lookahead;
+    private final int maxThrows;
+
+    private final AtomicLong throwsChecked = new AtomicLong();
+    private volatile boolean cancelled = false;
+
+    private final Histogram[] histograms = new Histogram[CELLS];
+    private final int[] matches = new int[CELLS];
+
+    /**
+     * @param lookahead the lookahead table from the current player RNG seed
+     * @param maxThrows the number of throw counts to simulate
+     */
+    EnchantmentDistribution(Item item, Predicate<List<InfoEnchantment>> enchantmentsPredicate, PlayerRandLookahead lookahead, int maxThrows) {
+        this.item = item;
+        this.enchantability = item.getEnchantability();
+        this.enchantmentsPredicate = enchantmentsPredicate;
+        this.lookahead = lookahead;
+        this.maxThrows = maxThrows;
+        for (int i = 0; i < CELLS; i++)
+            histograms[i] = new Histogram();
+    }
+
+    /**
+     * Runs the simulation, which should be called from within the {@link CrackerPool}. Returns this, or null if it was
+     * cancelled.
+     */
+    EnchantmentDistribution run() {
+        if (maxThrows > 0)
+            new RangeTask(0, maxThrows).invoke();
+        return cancelled ? null : this;
+    }
+
+    void cancel() {
+        cancelled = true;
+    }
+
+    long getThrowsChecked() {
+        return throwsChecked.get();
+    }
+
+    public Item getItem() {
+        return item;
+    }
+
+    public int getMaxThrows() {
+        return maxThrows;
+    }
+
+    /**
+     * Returns the number of throw counts which give enchantments matching the predicate
+     */
+    public synchronized int getMatches(int bookshelves, int slot) {
+        return matches[cell(bookshelves, slot)];
+    }
+
+    /**
+     * Returns the number of different outcomes, including the slot not being available
+     */
+    public synchronized int getOutcomeCount(int bookshelves, int slot) {
+        return histograms[cell(bookshelves, slot)].size;
+    }
+
+    /**
+     * Returns the most common outcomes, most common first
+     */
+    public synchronized List<Outcome> getTopOutcomes(int bookshelves, int slot, int limit) {
+        Histogram histogram = histograms[cell(bookshelves, slot)];
+        long[] top = histogram.top(limit);
+        List<Outcome> outcomes = new ArrayList<>(top.length);
+        EnchantmentTables tables = EnchantmentTables.get();
+        for (long key : top)
+            outcomes.add(new Outcome(unpack(tables, key), key == UNAVAILABLE, histogram.get(key)));
+        return outcomes;
+    }
+
+    private static int cell(int bookshelves, int slot) {
+        return bookshelves * 3 + slot;
+    }
+
+    // ===== SIMULATION ===== //
+
+    private void simulateRange(int from, int to) {
+        EnchantmentSimulator simulator = new EnchantmentSimulator();
+        Histogram[] histograms = new Histogram[CELLS];
+        for (int i = 0; i < CELLS; i++)
+            histograms[i] = new Histogram();
+        int[] matches = new int[CELLS];
+        int[] codes = new int[MAX_PACKED_ENCHANTMENTS];
+
+        for (int i = from; i < to; i++) {
+            if (cancelled)
+                return;
+            int xpSeed = lookahead.getXpSeed(i);
+            for (int bookshelves = 0; bookshelves <= 15; bookshelves++) {
+                simulator.setSeed(xpSeed);
+                int level0 = simulator.calculateEnchantmentPower(0, bookshelves, enchantability);
+                int level1 = simulator.calculateEnchantmentPower(1, bookshelves, enchantability);
+                int level2 = simulator.calculateEnchantmentPower(2, bookshelves, enchantability);
+                for (int slot = 0; slot < 3; slot++) {
+                    int level = slot == 0 ? level0 : slot == 1 ? level1 : level2;
+                    int cell = cell(bookshelves, slot);
+                    if (level < slot + 1) {
+                        histograms[cell].increment(UNAVAILABLE);
+                        continue;
+                    }
+                    simulator.generateEnchantments(item, xpSeed, slot, level);
+                    histograms[cell].increment(pack(simulator, codes));
+                    if (enchantmentsPredicate.test(simulator.getEnchantments()))
+                        matches[cell]++;
+                }
+            }
+        }
+
+        synchronized (this) {
+            for (int cell = 0; cell < CELLS; cell++) {
+                this.histograms[cell].addAll(histograms[cell]);
+                this.matches[cell] += matches[cell];
+            }
+        }
+        throwsChecked.addAndGet(to - from);
+    }
+
+    private static long pack(EnchantmentSimulator simulator, int[] codes) {
+        int count = simulator.getEnchantmentCount();
+        if (count > MAX_PACKED_ENCHANTMENTS)
+            return UNKNOWN;
+        // insertion sort, so that the same enchantments in a different order are the same outcome
+        for (int i = 0; i < count; i++) {
+            int id = simulator.getEnchantmentId(i);
+            int level = simulator.getEnchantmentLevel(i);
+            if (id >= 64 || level >= 8)
+                return UNKNOWN;
+            int code = id << 3 | level;
+            int j = i;
+            for (; j > 0 && codes[j - 1] > code; j--)
+                codes[j] = codes[j - 1];
+            codes[j] = code;
+        }
+        long key = 0;
+        for (int i = 0; i < count; i++)
+            key = key << CODE_BITS | codes[i];
+        return key;
+    }
+
+    private static List<InfoEnchantment> unpack(EnchantmentTables tables, long key) {
+        List<InfoEnchantment> enchantments = new ArrayList<>();
+        if (key < 0)
+            return enchantments;
+        for (; key != 0; key >>>= CODE_BITS) {
+            int code = (int) (key & ((1 << CODE_BITS) - 1));
+            enchantments.add(0, tables.getInfoEnchantment(code >>> 3, code & 7));
+        }
+        return enchantments;
+    }
+
+    public static class Outcome {
+        private final List<InfoEnchantment> enchantments;
+        private final boolean unavailable;
+        private final int count;
+
+        private Outcome(List<InfoEnchantment> enchantments, boolean unavailable, int count) {
+            this.enchantments = enchantments;
+            this.unavailable = unavailable;
+            this.count = count;
+        }
+
+        /**
+         * The enchantments of this outcome, which are empty if the outcome couldn't be recorded
+         */
+        public List<InfoEnchantment> getEnchantments() {
+            return enchantments;
+        }
+
+        /**
+         * Whether this is the outcome where the slot isn't available
+         */
+        public boolean isUnavailable() {
+            return unavailable;
+        }
+
+        public int getCount() {
+            return count;
+        }
+    }
+
+    /**
+     * An open addressing hash map from packed outcomes to counts
+     */
+    private static class Histogram {
+        private static final long EMPTY = -1;
+
+        private long[] keys = newKeys(16);
+        private int[] counts = new int[16];
+        private int size;
+
+        private static long[] newKeys(int capacity) {
+            long[] keys = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+            return keys;
+        }
+
+        void increment(long key) {
+            add(key, 1);
+        }
+
+        void add(long key, int count) {
+            int mask = keys.length - 1;
+            int index = hash(key) & mask;
+            while (keys[index] != EMPTY) {
+                if (keys[index] == key) {
+                    counts[index] += count;
+                    return;
+                }
+                index = (index + 1) & mask;
+            }
+            keys[index] = key;
+            counts[index] = count;
+            if (++size * 2 > keys.length)
+                grow();
+        }
+
+        int get(long key) {
+            int mask = keys.length - 1;
+            int index = hash(key) & mask;
+            while (keys[index] != EMPTY) {
+                if (keys[index] == key)
+                    return counts[index];
+                index = (index + 1) & mask;
+            }
+            return 0;
+        }
+
+        void addAll(Histogram other) {
+            for (int i = 0; i < other.keys.length; i++)
+                if (other.keys[i] != EMPTY)
+                    add(other.keys[i], other.counts[i]);
+        }
+
+        /**
+         * Returns the keys of the highest counts, highest first
+         */
+        long[] top(int limit) {
+            limit = Math.min(limit, size);
+            if (limit <= 0)
+                return new long[0];
+            long[] topKeys = new long[limit];
+            int[] topCounts = new int[limit];
+            int found = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == EMPTY)
+                    continue;
+                int count = counts[i];
+                if (found == limit && count <= topCounts[limit - 1])
+                    continue;
+                int j = found < limit ? found++ : limit - 1;
+                for (; j > 0 && topCounts[j - 1] < count; j--) {
+                    topKeys[j] = topKeys[j - 1];
+                    topCounts[j] = topCounts[j - 1];
+                }
+                topKeys[j] = keys[i];
+                topCounts[j] = count;
+            }
+            return topKeys;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldCounts = counts;
+            keys = newKeys(oldKeys.length * 2);
+            counts = new int[oldKeys.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++)
+                if (oldKeys[i] != EMPTY)
+                    add(oldKeys[i], oldCounts[i]);
+        }
+
+        private static int hash(long key) {
+            key *= 0x9e3779b97f4a7c15L;
+            return (int) (key ^ (key >>> 32));
+        }
+    }
+
+    private class RangeTask extends RecursiveAction {
+        private final int from;
+        private final int to;
+
+        RangeTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (cancelled)
+                return;
+            if (to - from <= CHUNK_SIZE) {
+                simulateRange(from, to);
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new RangeTask(from, mid), new RangeTask(mid, to));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,267 @@
+package net.earthcomputer.clientcommands.features;
+
+import net.minecraft.enchantment.InfoEnchantment;
+import net.minecraft.item.Item;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Plans the enchantment manipulation for several items at once, minimizing the total number of item throws and dummy
+ * enchantments.
+ *
+ * We count player RNG steps from the current player seed. The XP seed at position {@code p} is the cracked XP seed if
+ * {@code p == 0}, otherwise the output of step {@code p}. With the RNG at position {@code t}, an item can be enchanted
+ * at position {@code t} straight away, or at {@code t + 1 + 4 * n} after throwing {@code n} items and doing a dummy
+ * enchantment. Either way, enchanting the item takes the RNG to the position after the one that was used.
+ *
+ * First, the RNG stream is scanned once, in parallel, for the positions where each item gets the wanted
+ * enchantments. Then a memoized branch-and-bound search picks the order of the items and the position used for each
+ * of them. To keep the search small, only the first few reachable positions of each item are tried from each state.
+ */
+class EnchantmentPlanner {
+
+    private static final int CHUNK_SIZE = 1024;
+    private static final int CANDIDATES_PER_ITEM = 3;
+    private static final int MAX_SEARCH_STATES = 1 << 20;
+
+    private final List<Item> items;
+    private final List<Predicate<List<InfoEnchantment>>> enchantmentsPredicates;
+    private final boolean xpSeedKnown;
+    private final int xpSeed;
+    private final long playerSeed;
+    private final int horizon;
+
+    private final AtomicLong positionsChecked = new AtomicLong();
+    private volatile boolean cancelled = false;
+
+    private List<Long>[] chunkHits;
+    private long[][] hitsByItem;
+    private final Map<Long, long[]> memo = new HashMap<>();
+
+    /**
+     * @param xpSeedKnown whether {@code xpSeed} is the current XP seed
+     * @param playerSeed the current player RNG seed
+     * @param maxThrows the maximum number of item throws to plan for
+     */
+    EnchantmentPlanner(List<Item> items, List<Predicate<List<InfoEnchantment>>> enchantmentsPredicates, boolean xpSeedKnown, int xpSeed, long playerSeed, int maxThrows) {
+        this.items = items;
+        this.enchantmentsPredicates = enchantmentsPredicates;
+        this.xpSeedKnown = xpSeedKnown;
+        this.xpSeed = xpSeed;
+        this.playerSeed = playerSeed;
+        // each item takes up to 2 steps for the dummy and real enchantments, on top of the throws
+        this.horizon = 4 * maxThrows + 2 * items.size() + 1;
+    }
+
+    /**
+     * Runs the planner, which should be called from within the {@link CrackerPool}. Returns the steps of the plan in
+     * order, or null if no plan was found.
+     */
+    @SuppressWarnings("unchecked")
+    List<EnchantmentCracker.PlanStep> run() {
+        chunkHits = new List[(horizon + CHUNK_SIZE - 1) / CHUNK_SIZE];
+        new ScanTask(0, horizon).invoke();
+        if (cancelled)
+            return null;
+        collectHits();
+
+        int fullMask = (1 << items.size()) - 1;
+        long[] root = search(fullMask, 0);
+        if (cancelled || root == null)
+            return null;
+
+        List<EnchantmentCracker.PlanStep> plan = new ArrayList<>();
+        EnchantmentSimulator simulator = new EnchantmentSimulator();
+        int mask = fullMask;
+        int t = 0;
+        while (mask != 0) {
+            long[] node = memo.get(key(mask, t));
+            int itemIndex = (int) node[1];
+            int pos = (int) node[2];
+            int match = (int) node[3];
+            int itemThrows = pos == t ? -1 : (pos - t - 1) / 4;
+            // regenerate the enchantments to show them
+            Item item = items.get(itemIndex);
+            int bookshelves = match / 3;
+            int slot = match % 3;
+            int xpSeed = getXpSeed(pos);
+            simulator.setSeed(xpSeed);
+            // the same levels as the scan matched with
+            int level0 = ManipulationSearch.getShownLevel(0, simulator.calculateEnchantmentPower(0, bookshelves, item.getEnchantability()));
+            int level1 = ManipulationSearch.getShownLevel(1, simulator.calculateEnchantmentPower(1, bookshelves, item.getEnchantability()));
+            int level2 = ManipulationSearch.getShownLevel(2, simulator.calculateEnchantmentPower(2, bookshelves, item.getEnchantability()));
+            simulator.generateEnchantments(item, xpSeed, slot, slot == 0 ? level0 : slot == 1 ? level1 : level2);
+            plan.add(new EnchantmentCracker.PlanStep(item, new EnchantmentCracker.ManipulateResult(itemThrows, bookshelves, slot, simulator.copyEnchantments())));
+
+            mask &= ~(1 << itemIndex);
+            t = pos + 1;
+        }
+        return plan;
+    }
+
+    void cancel() {
+        cancelled = true;
+    }
+
+    long getPositionsChecked() {
+        return positionsChecked.get();
+    }
+
+    int getHorizon() {
+        return horizon;
+    }
+
+    private int getXpSeed(int pos) {
+        if (pos == 0)
+            return xpSeed;
+        return (int) (Lcg.advance(playerSeed, pos) >>> 16);
+    }
+
+    // ===== SCANNING ===== //
+
+    private void scanChunk(int chunk, int from, int to) {
+        EnchantmentSimulator simulator = new EnchantmentSimulator();
+        List<Long> hits = new ArrayList<>();
+        long seed = Lcg.advance(playerSeed, from);
+        for (int pos = from; pos < to; pos++) {
+            if (cancelled)
+                break;
+            if (pos != 0 || xpSeedKnown) {
+                int xpSeed = pos == 0 ? this.xpSeed : (int) (seed >>> 16);
+                for (int i = 0; i < items.size(); i++) {
+                    int match = ManipulationSearch.findMatch(simulator, items.get(i), items.get(i).getEnchantability(), enchantmentsPredicates.get(i), xpSeed);
+                    if (match != -1)
+                        hits.add(packHit(pos, i, match));
+                }
+            }
+            seed = Lcg.next(seed);
+        }
+        chunkHits[chunk] = hits;
+        positionsChecked.addAndGet(to - from);
+    }
+
+    private void collectHits() {
+        int[] counts = new int[items.size()];
+        for (List<Long> hits : chunkHits)
+            for (long hit : hits)
+                counts[unpackItem(hit)]++;
+        hitsByItem = new long[items.size()][];
+        for (int i = 0; i < items.size(); i++)
+            hitsByItem[i] = new long[counts[i]];
+        int[] sizes = new int[items.size()];
+        // the chunks are in position order, so each item's hits come out sorted
+        for (List<Long> hits : chunkHits) {
+            for (long hit : hits) {
+                int item = unpackItem(hit);
+                hitsByItem[item][sizes[item]++] = hit;
+            }
+        }
+        chunkHits = null;
+    }
+
+    private static long packHit(int pos, int item, int match) {
+        return ((long) pos << 16) | (item << 8) | match;
+    }
+
+    private static int unpackPos(long hit) {
+        return (int) (hit >>> 16);
+    }
+
+    private static int unpackItem(long hit) {
+        return (int) (hit >>> 8) & 0xff;
+    }
+
+    private static int unpackMatch(long hit) {
+        return (int) hit & 0xff;
+    }
+
+    // ===== PLANNING ===== //
+
+    private static long key(int mask, int t) {
+        return ((long) t << 32) | (mask & 0xffffffffL);
+    }
+
+    /**
+     * Returns {cost, item, position, match} of the cheapest way to enchant the items in the mask starting from RNG
+     * position {@code t}, or null if it's impossible within the horizon
+     */
+    private long[] search(int mask, int t) {
+        if (mask == 0)
+            return new long[] {0, -1, -1, -1};
+        long key = key(mask, t);
+        if (memo.containsKey(key))
+            return memo.get(key);
+        if (cancelled || memo.size() >= MAX_SEARCH_STATES)
+            return null;
+
+        long[] best = null;
+        for (int item = 0; item < items.size(); item++) {
+            if ((mask & (1 << item)) == 0)
+                continue;
+            long[] hits = hitsByItem[item];
+            int candidates = 0;
+            for (int index = firstHitAtOrAfter(hits, t); index < hits.length && candidates < CANDIDATES_PER_ITEM; index++) {
+                int pos = unpackPos(hits[index]);
+                int cost;
+                if (pos == t && (t != 0 || xpSeedKnown))
+                    cost = 0;
+                else if (pos > t && (pos - t - 1) % 4 == 0)
+                    cost = (pos - t - 1) / 4 + 1;
+                else
+                    continue;
+                candidates++;
+                // branch and bound: later hits of this item only cost more
+                if (best != null && cost >= best[0])
+                    break;
+                long[] rest = search(mask & ~(1 << item), pos + 1);
+                if (rest != null && (best == null || cost + rest[0] < best[0]))
+                    best = new long[] {cost + rest[0], item, pos, unpackMatch(hits[index])};
+            }
+        }
+        memo.put(key, best);
+        return best;
+    }
+
+    private static int firstHitAtOrAfter(long[] hits, int pos) {
+        int low = 0;
+        int high = hits.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (unpackPos(hits[mid]) < pos)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    private class ScanTask extends RecursiveAction {
+        private final int from;
+        private final int to;
+
+        ScanTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK_SIZE) {
+                scanChunk(from / CHUNK_SIZE, from, to);
+            } else {
+                // split on a chunk boundary so that each chunk has its own hit list
+                int mid = ((from + to) / 2 / CHUNK_SIZE) * CHUNK_SIZE;
+                if (mid <= from)
+                    mid = from + CHUNK_SIZE;
+                invokeAll(new ScanTask(from, mid), new ScanTask(mid, to));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,319 @@
+package net.earthcomputer.clientcommands.features;
+
+import net.minecraft.enchantment.Enchantment;
+import net.minecraft.enchantment.InfoEnchantment;
+import net.minecraft.item.Item;
+import net.minecraft.item.Items;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A self-contained copy of the vanilla enchanting algorithm for the crackers' hot loops.
+ *
+ * Vanilla goes through {@link java.util.Random}, which does a CAS on every call, and builds new lists of
+ * {@link InfoEnchantment} for every enchantment roll. This class uses a plain long for the RNG state and writes its
+ * results into preallocated arrays of raw enchantment ids and levels, so simulating a seed allocates nothing.
+ *
+ * Instances are not thread safe; use one per thread.
+ */
+public class EnchantmentSimulator {
+
+    // TODO: update-sensitive: EnchantmentHelper.calculateEnchantmentPower, getEnchantments and getHighestApplicableEnchantmentsAtPower
+
+    private final EnchantingAlgorithm algorithm;
+    private final EnchantmentTables tables;
+    private Item tableItem;
+    private EnchantmentTables.ItemTable itemTable;
+
+    private long seed;
+
+    private final int[] enchantmentIds;
+    private final int[] enchantmentLevels;
+    private int enchantmentCount;
+
+    private final int[] applicableIds;
+    private final int[] applicableLevels;
+    private final int[] applicableCumulativeWeights;
+    private int applicableCount;
+
+    private final List<InfoEnchantment> enchantmentsView = new AbstractList<InfoEnchantment>() {
+        @Override
+        public InfoEnchantment get(int index) {
+            if (index < 0 || index >= enchantmentCount)
+                throw new IndexOutOfBoundsException(String.valueOf(index));
+            return tables.getInfoEnchantment(enchantmentIds[index], enchantmentLevels[index]);
+        }
+
+        @Override
+        public int size() {
+            return enchantmentCount;
+        }
+    };
+
+    public EnchantmentSimulator() {
+        algorithm = EnchantingAlgorithm.get();
+        tables = EnchantmentTables.get();
+
+        int enchantmentCount = tables.getEnchantmentCount();
+        enchantmentIds = new int[enchantmentCount];
+        enchantmentLevels = new int[enchantmentCount];
+        applicableIds = new int[enchantmentCount];
+        applicableLevels = new int[enchantmentCount];
+        applicableCumulativeWeights = new int[enchantmentCount];
+    }
+
+    // ===== RNG ===== //
+
+    /**
+     * Equivalent to {@link java.util.Random#setSeed(long)}
+     */
+    public void setSeed(long seed) {
+        this.seed = (seed ^ PlayerRandCracker.MULTIPLIER) & PlayerRandCracker.MASK;
+    }
+
+    private int next(int bits) {
+        seed = (seed * PlayerRandCracker.MULTIPLIER + PlayerRandCracker.ADDEND) & PlayerRandCracker.MASK;
+        return (int) (seed >>> (48 - bits));
+    }
+
+    public int nextInt(int bound) {
+        if ((bound & -bound) == bound)
+            return (int) ((bound * (long) next(31)) >> 31);
+
+        int bits, val;
+        do {
+            bits = next(31);
+            val = bits % bound;
+        } while (bits - val + (bound - 1) < 0);
+
+        return val;
+    }
+
+    public float nextFloat() {
+        return next(24) / (float) (1 << 24);
+    }
+
+    // ===== ENCHANTING ===== //
+
+    /**
+     * Equivalent to {@link net.minecraft.enchantment.EnchantmentHelper#calculateEnchantmentPower}, using the current
+     * RNG state
+     */
+    public int calculateEnchantmentPower(int slot, int bookshelves, int enchantability) {
+        if (enchantability <= 0)
+            return 0;
+        if (bookshelves > 15)
+            bookshelves = 15;
+        int level = nextInt(8) + 1 + (bookshelves >> 1) + nextInt(bookshelves + 1);
+        if (slot == 0)
+            return Math.max(level / 3, 1);
+        return slot == 1 ? level * 2 / 3 + 1 : Math.max(level, bookshelves * 2);
+    }
+
+    /**
+     * Generates the enchantments an item would get in the given enchanting table slot, as the enchanting table does
+     * it. The RNG is left in the state it's in after generating the list, so that the clue can be picked afterwards.
+     * Returns the number of enchantments generated.
+     */
+    public int generateEnchantments(Item item, int xpSeed, int slot, int level) {
+        if (item != tableItem) {
+            itemTable = tables.getItemTable(item);
+            tableItem = item;
+        }
+
+        setSeed(xpSeed + slot);
+        enchantmentCount = 0;
+        algorithm.generateEnchantments(this, item, level);
+
+        if (item == Items.BOOK && enchantmentCount > 1)
+            removeEnchantment(nextInt(enchantmentCount));
+
+        return enchantmentCount;
+    }
+
+    void generateEnchantmentsLatest(Item item, int level) {
+        int enchantability = item.getEnchantability();
+        if (enchantability <= 0)
+            return;
+
+        level = modifyLevel(level, enchantability);
+
+        EnchantmentTables.ItemTable itemTable = this.itemTable;
+        if (itemTable.hasPower(level)) {
+            // pick the first enchantment straight from the table, we only need a mutable copy for extra enchantments
+            int totalWeight = itemTable.getTotalWeight(level);
+            if (totalWeight == 0)
+                return;
+            int index = itemTable.pick(level, nextInt(totalWeight));
+            addEnchantment(itemTable.ids[index], itemTable.levels[index]);
+            if (nextInt(50) > level)
+                return;
+            loadApplicableEnchantments(item, level);
+        } else {
+            loadApplicableEnchantments(item, level);
+            if (applicableCount == 0)
+                return;
+            pickApplicableEnchantment();
+            if (nextInt(50) > level)
+                return;
+        }
+
+        do {
+            removeIncompatibleApplicable(enchantmentIds[enchantmentCount - 1]);
+            if (applicableCount == 0)
+                break;
+
+            pickApplicableEnchantment();
+
+            level /= 2;
+        } while (nextInt(50) <= level);
+    }
+
+    void generateEnchantments1140(Item item, int level) {
+        int enchantability = item.getEnchantability();
+        if (enchantability <= 0)
+            return;
+
+        level = modifyLevel(level, enchantability);
+
+        loadApplicableEnchantments(item, level);
+        if (applicableCount != 0) {
+            pickApplicableEnchantment();
+
+            while (nextInt(50) <= level) {
+                level = level * 4 / 5 + 1;
+                loadApplicableEnchantments(item, level);
+                for (int i = 0; i < enchantmentCount; i++)
+                    removeIncompatibleApplicable(enchantmentIds[i]);
+
+                if (applicableCount == 0)
+                    break;
+
+                pickApplicableEnchantment();
+
+                level /= 2;
+            }
+        }
+    }
+
+    private int modifyLevel(int level, int enchantability) {
+        level += 1 + nextInt(enchantability / 4 + 1) + nextInt(enchantability / 4 + 1);
+        float change = (nextFloat() + nextFloat() - 1) * 0.15f;
+        return Math.max(Math.round((float) level + (float) level * change), 1);
+    }
+
+    /**
+     * Copies the applicable enchantments at the given power into the scratch arrays, from the item table if the
+     * power is in range, or from the registry if not (which can only happen with modded enchantment levels)
+     */
+    private void loadApplicableEnchantments(Item item, int power) {
+        EnchantmentTables.ItemTable itemTable = this.itemTable;
+        if (itemTable.hasPower(power)) {
+            int start = itemTable.rowStart[power];
+            int count = itemTable.rowStart[power + 1] - start;
+            System.arraycopy(itemTable.ids, start, applicableIds, 0, count);
+            System.arraycopy(itemTable.levels, start, applicableLevels, 0, count);
+            System.arraycopy(itemTable.cumulativeWeights, start, applicableCumulativeWeights, 0, count);
+            applicableCount = count;
+            return;
+        }
+
+        applicableCount = 0;
+        int cumulativeWeight = 0;
+        boolean isBook = item == Items.BOOK;
+        Enchantment[] enchantmentsById = tables.enchantmentsById;
+        for (int id = 0; id < enchantmentsById.length; id++) {
+            Enchantment enchantment = enchantmentsById[id];
+            if (enchantment == null || enchantment.isTreasure())
+                continue;
+            if (!isBook && (enchantment.type == null || !enchantment.type.isAcceptableItem(item)))
+                continue;
+            int level = EnchantmentTables.getLevelAtPower(enchantment, power);
+            if (level != 0) {
+                cumulativeWeight += tables.getWeight(id);
+                applicableIds[applicableCount] = id;
+                applicableLevels[applicableCount] = level;
+                applicableCumulativeWeights[applicableCount] = cumulativeWeight;
+                applicableCount++;
+            }
+        }
+    }
+
+    private void removeIncompatibleApplicable(int pickedId) {
+        boolean[] compatibleWithPicked = tables.compatible[pickedId];
+        int newCount = 0;
+        int cumulativeWeight = 0;
+        int prevCumulativeWeight = 0;
+        for (int i = 0; i < applicableCount; i++) {
+            int id = applicableIds[i];
+            int weight = applicableCumulativeWeights[i] - prevCumulativeWeight;
+            prevCumulativeWeight = applicableCumulativeWeights[i];
+            if (compatibleWithPicked[id]) {
+                cumulativeWeight += weight;
+                applicableIds[newCount] = id;
+                applicableLevels[newCount] = applicableLevels[i];
+                applicableCumulativeWeights[newCount] = cumulativeWeight;
+                newCount++;
+            }
+        }
+        applicableCount = newCount;
+    }
+
+    private void pickApplicableEnchantment() {
+        int totalWeight = applicableCumulativeWeights[applicableCount - 1];
+        if (totalWeight <= 0)
+            throw new IllegalArgumentException();
+        int weight = nextInt(totalWeight);
+        int low = 0;
+        int high = applicableCount - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (applicableCumulativeWeights[mid] > weight)
+                high = mid;
+            else
+                low = mid + 1;
+        }
+        addEnchantment(applicableIds[low], applicableLevels[low]);
+    }
+
+    private void addEnchantment(int id, int level) {
+        enchantmentIds[enchantmentCount] = id;
+        enchantmentLevels[enchantmentCount] = level;
+        enchantmentCount++;
+    }
+
+    private void removeEnchantment(int index) {
+        enchantmentCount--;
+        System.arraycopy(enchantmentIds, index + 1, enchantmentIds, index, enchantmentCount - index);
+        System.arraycopy(enchantmentLevels, index + 1, enchantmentLevels, index, enchantmentCount - index);
+    }
+
+    // ===== RESULTS ===== //
+
+    public int getEnchantmentCount() {
+        return enchantmentCount;
+    }
+
+    public int getEnchantmentId(int index) {
+        return enchantmentIds[index];
+    }
+
+    public int getEnchantmentLevel(int index) {
+        return enchantmentLevels[index];
+    }
+
+    /**
+     * Returns a live view of the last generated enchantments. The view changes when enchantments are next generated,
+     * use {@link #copyEnchantments()} to keep them.
+     */
+    public List<InfoEnchantment> getEnchantments() {
+        return enchantmentsView;
+    }
+
+    public List<InfoEnchantment> copyEnchantments() {
+        return new ArrayList<>(enchantmentsView);
+    }
+
+}
@@ -0,0 +1,216 @@
+package net.earthcomputer.clientcommands.features;
+
+import net.minecraft.enchantment.Enchantment;
+import net.minecraft.enchantment.InfoEnchantment;
+import net.minecraft.item.Item;
+import net.minecraft.item.Items;
+import net.minecraft.util.registry.Registry;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Precomputed enchantment data for {@link EnchantmentSimulator}.
+ *
+ * The applicable enchantments for an item only depend on the item and the enchantment power (the simulator never
+ * allows treasure enchantments), so instead of walking the enchantment registry for every roll we build a table for
+ * each item type over every reachable power. Each row stores the enchantment ids, levels and cumulative weights of
+ * {@link net.minecraft.enchantment.EnchantmentHelper#getHighestApplicableEnchantmentsAtPower}, in registry order.
+ *
+ * The tables depend on the enchantment registry and on the {@link EnchantingAlgorithm} (multiconnect changes the
+ * registry, and the algorithm changes the enchantment weights). Both only change when joining a server, which calls
+ * {@link #invalidate()}, so {@link #get()} only has to compare a counter before handing out the cached tables.
+ */
+public class EnchantmentTables {
+
+    // TODO: update-sensitive: EnchantmentHelper.getHighestApplicableEnchantmentsAtPower
+
+    private static volatile EnchantmentTables instance;
+    private static volatile int generation = 0;
+
+    private final int tablesGeneration;
+
+    final Enchantment[] enchantmentsById;
+    final boolean[][] compatible;
+    private final int[] weights;
+    private final InfoEnchantment[][] infoEnchantments;
+    private final Map<Item, ItemTable> itemTables = new ConcurrentHashMap<>();
+
+    private EnchantmentTables(int tablesGeneration) {
+        this.tablesGeneration = tablesGeneration;
+
+        int enchantmentCount = 0;
+        for (Enchantment enchantment : Registry.ENCHANTMENT)
+            enchantmentCount = Math.max(enchantmentCount, Registry.ENCHANTMENT.getRawId(enchantment) + 1);
+
+        enchantmentsById = new Enchantment[enchantmentCount];
+        for (Enchantment enchantment : Registry.ENCHANTMENT)
+            enchantmentsById[Registry.ENCHANTMENT.getRawId(enchantment)] = enchantment;
+
+        compatible = new boolean[enchantmentCount][enchantmentCount];
+        weights = new int[enchantmentCount];
+        infoEnchantments = new InfoEnchantment[enchantmentCount][];
+        for (int a = 0; a < enchantmentCount; a++) {
+            Enchantment enchA = enchantmentsById[a];
+            if (enchA == null)
+                continue;
+            weights[a] = enchA.getWeight().getWeight();
+            infoEnchantments[a] = new InfoEnchantment[enchA.getMaximumLevel() + 1];
+            for (int b = 0; b < enchantmentCount; b++) {
+                if (enchantmentsById[b] != null)
+                    compatible[a][b] = enchA.isDifferent(enchantmentsById[b]);
+            }
+        }
+    }
+
+    /**
+     * Returns the tables for the current registry and enchanting algorithm, rebuilding them if they were invalidated
+     */
+    public static EnchantmentTables get() {
+        int generation = EnchantmentTables.generation;
+        EnchantmentTables tables = instance;
+        if (tables == null || tables.tablesGeneration != generation) {
+            synchronized (EnchantmentTables.class) {
+                tables = instance;
+                if (tables == null || tables.tablesGeneration != generation) {
+                    instance = tables = new EnchantmentTables(generation);
+                }
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * Called when the enchantment registry or the enchanting algorithm may have changed, so that the tables are
+     * rebuilt the next time they're needed
+     */
+    public static synchronized void invalidate() {
+        generation++;
+    }
+
+    public int getEnchantmentCount() {
+        return enchantmentsById.length;
+    }
+
+    public ItemTable getItemTable(Item item) {
+        return itemTables.computeIfAbsent(item, this::buildItemTable);
+    }
+
+    InfoEnchantment getInfoEnchantment(int id, int level) {
+        InfoEnchantment[] byLevel = infoEnchantments[id];
+        InfoEnchantment info = byLevel[level];
+        if (info == null)
+            byLevel[level] = info = new InfoEnchantment(enchantmentsById[id], level);
+        return info;
+    }
+
+    /**
+     * The highest power the enchanting algorithm can reach for an item with the given enchantability, given that the
+     * table never shows levels above 30
+     */
+    static int getMaxReachablePower(int enchantability) {
+        int level = 30 + 1 + 2 * (enchantability / 4);
+        return Math.round(level + level * 0.15f);
+    }
+
+    private ItemTable buildItemTable(Item item) {
+        int maxPower = getMaxReachablePower(item.getEnchantability());
+        boolean isBook = item == Items.BOOK;
+
+        int[] rowStart = new int[maxPower + 2];
+        int[] ids = new int[16];
+        int[] levels = new int[16];
+        int[] cumulativeWeights = new int[16];
+        int size = 0;
+
+        for (int power = 0; power <= maxPower; power++) {
+            rowStart[power] = size;
+            int cumulativeWeight = 0;
+            for (int id = 0; id < enchantmentsById.length; id++) {
+                Enchantment enchantment = enchantmentsById[id];
+                if (enchantment == null || enchantment.isTreasure())
+                    continue;
+                if (!isBook && (enchantment.type == null || !enchantment.type.isAcceptableItem(item)))
+                    continue;
+                int level = getLevelAtPower(enchantment, power);
+                if (level == 0)
+                    continue;
+                if (size == ids.length) {
+                    ids = Arrays.copyOf(ids, size * 2);
+                    levels = Arrays.copyOf(levels, size * 2);
+                    cumulativeWeights = Arrays.copyOf(cumulativeWeights, size * 2);
+                }
+                cumulativeWeight += weights[id];
+                ids[size] = id;
+                levels[size] = level;
+                cumulativeWeights[size] = cumulativeWeight;
+                size++;
+            }
+        }
+        rowStart[maxPower + 1] = size;
+
+        return new ItemTable(maxPower, rowStart, ids, levels, cumulativeWeights);
+    }
+
+    /**
+     * Returns the level of the enchantment which would be applicable at the given power, or 0 if none is
+     */
+    static int getLevelAtPower(Enchantment enchantment, int power) {
+        for (int level = enchantment.getMaximumLevel(); level > enchantment.getMinimumLevel() - 1; level--) {
+            if (power >= enchantment.getMinimumPower(level) && power <= enchantment.getMaximumPower(level))
+                return level;
+        }
+        return 0;
+    }
+
+    int getWeight(int id) {
+        return weights[id];
+    }
+
+    /**
+     * The applicable enchantments for one item type, indexed by power. Row {@code power} spans the indices
+     * {@code [rowStart[power], rowStart[power + 1])} of the other arrays.
+     */
+    public static class ItemTable {
+        final int maxPower;
+        final int[] rowStart;
+        final int[] ids;
+        final int[] levels;
+        final int[] cumulativeWeights;
+
+        ItemTable(int maxPower, int[] rowStart, int[] ids, int[] levels, int[] cumulativeWeights) {
+            this.maxPower = maxPower;
+            this.rowStart = rowStart;
+            this.ids = ids;
+            this.levels = levels;
+            this.cumulativeWeights = cumulativeWeights;
+        }
+
+        public boolean hasPower(int power) {
+            return power >= 0 && power <= maxPower;
+        }
+
+        public int getTotalWeight(int power) {
+            int end = rowStart[power + 1];
+            return end == rowStart[power] ? 0 : cumulativeWeights[end - 1];
+        }
+
+        /**
+         * Returns the index of the entry picked by the given random weight in {@code [0, getTotalWeight(power))}
+         */
+        public int pick(int power, int weight) {
+            int low = rowStart[power];
+            int high = rowStart[power + 1] - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (cumulativeWeights[mid] > weight)
+                    high = mid;
+                else
+                    low = mid + 1;
+            }
+            return low;
+        }
+    }
+
+}
@@ -0,0 +1,98 @@
+package net.earthcomputer.clientcommands.features;
+
+import java.util.Random;
+import java.util.function.LongPredicate;
+import java.util.function.Predicate;
+
+/**
+ * The linear congruential generator behind {@link java.util.Random}, working on the raw 48 bit state.
+ *
+ * Taking {@code n} steps is an affine map of the state, whose multiplier and addend are found by repeated squaring in
+ * {@code O(log n)} time, so any state ahead can be reached without walking the states in between. Searches over
+ * consecutive states, such as the states after each number of item throws, should go through
+ * {@link #firstMatch(long, long, long, int, Predicate)}, which walks the states with one multiply-add each and hands
+ * them to the condition through a single reused {@link SeedRandom}.
+ */
+public final class Lcg {
+
+    public static final long MULTIPLIER = 0x5deece66dL;
+    public static final long ADDEND = 0xbL;
+    public static final long MASK = (1L << 48) - 1;
+
+    private Lcg() {
+    }
+
+    /**
+     * Returns the state after one step from the given state
+     */
+    public static long next(long state) {
+        return (state * MULTIPLIER + ADDEND) & MASK;
+    }
+
+    /**
+     * Returns the state the given number of steps ahead of the given state, in O(log(steps)) time
+     */
+    public static long advance(long state, long steps) {
+        return (state * getMultiplier(steps) + getAddend(steps)) & MASK;
+    }
+
+    /**
+     * Returns the multiplier of taking the given number of steps at once
+     */
+    public static long getMultiplier(long steps) {
+        long multiplier = 1;
+        long stepMultiplier = MULTIPLIER;
+        for (; steps > 0; steps >>>= 1) {
+            if ((steps & 1) != 0)
+                multiplier *= stepMultiplier;
+            stepMultiplier *= stepMultiplier;
+        }
+        return multiplier & MASK;
+    }
+
+    /**
+     * Returns the addend of taking the given number of steps at once
+     */
+    public static long getAddend(long steps) {
+        long addend = 0;
+        long stepMultiplier = MULTIPLIER;
+        long stepAddend = ADDEND;
+        for (; steps > 0; steps >>>= 1) {
+            if ((steps & 1) != 0)
+                addend = addend * stepMultiplier + stepAddend;
+            stepAddend = (stepMultiplier + 1) * stepAddend;
+            stepMultiplier *= stepMultiplier;
+        }
+        return addend & MASK;
+    }
+
+    /**
+     * Returns the index of the first of {@code count} consecutive states which matches the condition, or -1 if none
+     * of them do. The first state is the given one, and each state after is the one before with the stride applied,
+     * as given by {@link #getMultiplier} and {@link #getAddend}.
+     */
+    public static int firstMatch(long state, long strideMultiplier, long strideAddend, int count, LongPredicate condition) {
+        for (int i = 0; i < count; i++) {
+            if (condition.test(state))
+                return i;
+            state = (state * strideMultiplier + strideAddend) & MASK;
+        }
+        return -1;
+    }
+
+    /**
+     * Like {@link #firstMatch(long, long, long, int, LongPredicate)}, but the condition is given a {@link Random} in
+     * each state. The same instance is used for every state, so the condition mustn't keep it.
+     */
+    public static int firstMatch(long state, long strideMultiplier, long strideAddend, int count, Predicate<Random> condition) {
+        SeedRandom rand = new SeedRandom();
+        for (int i = 0; i < count; i++) {
+            rand.setState(state);
+            if (condition.test(rand))
+                return i;
+            state = (state * strideMultiplier + strideAddend) & MASK;
+        }
+        return -1;
+    }
+
+}
@@ -0,0 +1,165 @@
+package net.earthcomputer.clientcommands.features;
+
+import net.minecraft.enchantment.InfoEnchantment;
+import net.minecraft.item.Item;
+
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Searches the player RNG stream for the lowest number of item throws which gives an XP seed producing the wanted
+ * enchantments.
+ *
+ * The throw counts are split into ranges which are searched in parallel on the {@link CrackerPool}. The XP seeds come
+ * from the shared {@link PlayerRandLookahead}, so ranges don't depend on each other, and repeated searches from the
+ * same player seed don't walk the RNG again. Once a match is found, ranges above it stop early, while ranges below it
+ * carry on in case there is an earlier match. The result is the same as searching the throw counts in order.
+ */
+class ManipulationSearch {
+
+    private static final int CHUNK_SIZE = 1024;
+
+    private final Item item;
+    private final int enchantability;
+    private final Predicate<List<InfoEnchantment>> enchantmentsPredicate;
+    private final boolean xpSeedKnown;
+    private final int xpSeed;
+    private final PlayerRandLookahead lookahead;
+    private final int maxThrows;
+
+    private final AtomicInteger bestThrows = new AtomicInteger(Integer.MAX_VALUE);
+    private final AtomicLong throwsChecked = new AtomicLong();
+    private volatile boolean cancelled = false;
+    private EnchantmentCracker.ManipulateResult bestResult;
+
+    /**
+     * @param xpSeedKnown whether {@code xpSeed} is the current XP seed, in which case enchanting without a dummy
+     *                    enchantment is tried first
+     * @param lookahead the lookahead table from the current player RNG seed
+     * @param maxThrows the number of throw counts to search, 0 to not search with a dummy enchantment at all
+     */
+    ManipulationSearch(Item item, Predicate<List<InfoEnchantment>> enchantmentsPredicate, boolean xpSeedKnown, int xpSeed, PlayerRandLookahead lookahead, int maxThrows) {
+        this.item = item;
+        this.enchantability = item.getEnchantability();
+        this.enchantmentsPredicate = enchantmentsPredicate;
+        this.xpSeedKnown = xpSeedKnown;
+        this.xpSeed = xpSeed;
+        this.lookahead = lookahead;
+        this.maxThrows = maxThrows;
+    }
+
+    /**
+     * Runs the search, which should be called from within the {@link CrackerPool}. Returns null if nothing matched.
+     */
+    EnchantmentCracker.ManipulateResult run() {
+        if (xpSeedKnown) {
+            EnchantmentCracker.ManipulateResult result = test(new EnchantmentSimulator(), -1, xpSeed);
+            if (result != null)
+                return result;
+        }
+        if (maxThrows > 0)
+            new RangeTask(0, maxThrows).invoke();
+        synchronized (this) {
+            return bestResult;
+        }
+    }
+
+    void cancel() {
+        cancelled = true;
+    }
+
+    long getThrowsChecked() {
+        return throwsChecked.get();
+    }
+
+    int getMaxThrows() {
+        return maxThrows;
+    }
+
+    private void searchRange(int from, int to) {
+        EnchantmentSimulator simulator = new EnchantmentSimulator();
+        int i;
+        for (i = from; i < to; i++) {
+            if (cancelled || i >= bestThrows.get())
+                break;
+            // the dummy enchantment generates the XP seed after the throws
+            EnchantmentCracker.ManipulateResult result = test(simulator, i, lookahead.getXpSeed(i));
+            if (result != null) {
+                onFound(i, result);
+                break;
+            }
+        }
+        throwsChecked.addAndGet(to - from);
+    }
+
+    private synchronized void onFound(int throwCount, EnchantmentCracker.ManipulateResult result) {
+        if (throwCount < bestThrows.get()) {
+            bestResult = result;
+            bestThrows.set(throwCount);
+        }
+    }
+
+    private EnchantmentCracker.ManipulateResult test(EnchantmentSimulator simulator, int throwCount, int xpSeed) {
+        int match = findMatch(simulator, item, enchantability, enchantmentsPredicate, xpSeed);
+        if (match == -1)
+            return null;
+        // the simulator still holds the matching enchantments
+        return new EnchantmentCracker.ManipulateResult(throwCount, match / 3, match % 3, simulator.copyEnchantments());
+    }
+
+    /**
+     * Finds the first bookshelf count and slot where the XP seed gives enchantments matching the predicate, and
+     * returns {@code bookshelves * 3 + slot}, or -1 if there is none. On a match, the simulator is left holding the
+     * matching enchantments.
+     */
+    static int findMatch(EnchantmentSimulator simulator, Item item, int enchantability, Predicate<List<InfoEnchantment>> enchantmentsPredicate, int xpSeed) {
+        int level0, level1, level2;
+        for (int bookshelves = 0; bookshelves <= 15; bookshelves++) {
+            simulator.setSeed(xpSeed);
+            level0 = getShownLevel(0, simulator.calculateEnchantmentPower(0, bookshelves, enchantability));
+            level1 = getShownLevel(1, simulator.calculateEnchantmentPower(1, bookshelves, enchantability));
+            level2 = getShownLevel(2, simulator.calculateEnchantmentPower(2, bookshelves, enchantability));
+            for (int slot = 0; slot < 3; slot++) {
+                simulator.generateEnchantments(item, xpSeed, slot, slot == 0 ? level0 : slot == 1 ? level1 : level2);
+                if (enchantmentsPredicate.test(simulator.getEnchantments()))
+                    return bookshelves * 3 + slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the level the table offers in the given slot for the given rolled level, which is 0 if the slot would
+     * be empty
+     */
+    static int getShownLevel(int slot, int level) {
+        return level < slot + 1 ? 0 : level;
+    }
+
+    private class RangeTask extends RecursiveAction {
+        private final int from;
+        private final int to;
+
+        RangeTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (cancelled || from >= bestThrows.get())
+                return;
+            if (to - from <= CHUNK_SIZE) {
+                searchRange(from, to);
+            } else {
+                int mid = (from + to) >>> 1;
+                // the lower half runs first on this thread, so low throw counts are found early
+                invokeAll(new RangeTask(from, mid), new RangeTask(mid, to));
+            }
+        }
+    }
+
+}
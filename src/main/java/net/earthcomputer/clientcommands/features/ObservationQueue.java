@@ -0,0 +1,82 @@
+package net.earthcomputer.clientcommands.features;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands observations from the packet handlers on the client thread to the {@link CrackerExecutor} thread, which
+ * processes them in order.
+ *
+ * The client thread is the only producer and the cracker thread the only consumer, so the queue is a fixed size ring
+ * buffer where each index is only ever written by one side, and neither side takes a lock. Queueing an observation
+ * never blocks or allocates, and if the cracker thread falls too far behind, the observation is dropped instead. The
+ * cracker thread is only woken up when the queue goes from empty to not empty.
+ */
+public class ObservationQueue {
+
+    private static final Logger LOGGER = LogManager.getLogger("ObservationQueue");
+
+    private static final int CAPACITY = 256;
+    private static final int INDEX_MASK = CAPACITY - 1;
+
+    private static final Observation[] buffer = new Observation[CAPACITY];
+    // the next index to read, only written by the cracker thread
+    private static final AtomicLong head = new AtomicLong();
+    // the next index to write, only written by the client thread
+    private static final AtomicLong tail = new AtomicLong();
+    private static final AtomicBoolean draining = new AtomicBoolean();
+
+    /**
+     * Queues an observation to be processed on the cracker thread, which must be called from the client thread.
+     * Returns false if the queue is full, in which case the observation is dropped.
+     */
+    public static boolean offer(Observation observation) {
+        long tail = ObservationQueue.tail.get();
+        if (tail - head.get() == CAPACITY)
+            return false;
+        buffer[(int) tail & INDEX_MASK] = observation;
+        // publishes the slot to the cracker thread
+        ObservationQueue.tail.lazySet(tail + 1);
+        if (draining.compareAndSet(false, true))
+            CrackerExecutor.get().execute(ObservationQueue::drain);
+        return true;
+    }
+
+    private static Observation poll() {
+        long head = ObservationQueue.head.get();
+        if (head == tail.get())
+            return null;
+        int index = (int) head & INDEX_MASK;
+        Observation observation = buffer[index];
+        buffer[index] = null;
+        // hands the slot back to the client thread
+        ObservationQueue.head.lazySet(head + 1);
+        return observation;
+    }
+
+    private static void drain() {
+        do {
+            Observation observation;
+            while ((observation = poll()) != null) {
+                try {
+                    observation.process();
+                } catch (RuntimeException e) {
+                    LOGGER.error("Error processing observation", e);
+                }
+            }
+            draining.set(false);
+            // something may have been queued between the last poll and clearing the flag, without waking us up
+        } while (head.get() != tail.get() && draining.compareAndSet(false, true));
+    }
+
+    /**
+     * Something seen on the client thread which is processed on the cracker thread
+     */
+    public interface Observation {
+        void process();
+    }
+
+}
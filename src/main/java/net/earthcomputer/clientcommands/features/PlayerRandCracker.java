@@ -1,14 +1,18 @@
 package net.earthcomputer.clientcommands.features;
 
+import net.cortex.clientAddon.cracker.Lattice_cracker;
+import net.cortex.clientAddon.cracker.ThrowObservation;
 import net.earthcomputer.clientcommands.TempRules;
 import net.earthcomputer.clientcommands.command.ClientCommandManager;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.network.ClientPlayerEntity;
+import net.minecraft.client.network.packet.EntitySpawnS2CPacket;
 import net.minecraft.client.resource.language.I18n;
 import net.minecraft.container.Slot;
 import net.minecraft.container.SlotActionType;
 import net.minecraft.enchantment.EnchantmentHelper;
 import net.minecraft.enchantment.Enchantments;
+import net.minecraft.entity.EntityType;
 import net.minecraft.entity.LivingEntity;
 import net.minecraft.item.ArmorItem;
 import net.minecraft.item.Item;
@@ -22,20 +26,30 @@ import net.minecraft.util.StringIdentifiable;
 import java.lang.reflect.Field;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
 import java.util.function.Predicate;
 
 public class PlayerRandCracker {
 
     // ===== RNG IMPLEMENTATION ===== //
 
-    public static final long MULTIPLIER = 0x5deece66dL;
-    public static final long ADDEND = 0xbL;
-    public static final long MASK = (1L << 48) - 1;
+    public static final long MULTIPLIER = Lcg.MULTIPLIER;
+    public static final long ADDEND = Lcg.ADDEND;
+    public static final long MASK = Lcg.MASK;
+    // the LCG step applied 4 times, as happens for each thrown item
+    public static final long MULTIPLIER_4 = Lcg.getMultiplier(4);
+    public static final long ADDEND_4 = Lcg.getAddend(4);
 
     private static long seed;
+    private static PlayerRandLookahead lookahead;
 
     private static int next(int bits) {
-        seed = (seed * MULTIPLIER + ADDEND) & MASK;
+        seed = Lcg.next(seed);
+        lookahead = null;
+        // the other hypotheses make the same call, nextInt(bound) only differs in the rare case that it retries
+        if (hypotheses != null)
+            for (int i = 0; i < hypotheses.length; i++)
+                hypotheses[i] = Lcg.next(hypotheses[i]);
         return (int) (seed >>> (48 - bits));
     }
 
@@ -62,21 +76,57 @@ public class PlayerRandCracker {
 
     public static void setSeed(long seed) {
         PlayerRandCracker.seed = seed;
+        lookahead = null;
+        clearHypotheses();
+        TempRules.playerRandHypotheses = 1;
     }
 
     public static long getSeed() {
         return seed;
     }
 
+    /**
+     * Returns the lookahead table from the current player seed, which is kept across item throws
+     */
+    public static PlayerRandLookahead getLookahead() {
+        if (lookahead == null || lookahead.getSeed() != seed)
+            lookahead = new PlayerRandLookahead(seed);
+        return lookahead;
+    }
+
+    private static void onItemThrown() {
+        if (hypotheses != null)
+            onItemThrownUncertain();
+        PlayerRandLookahead lookahead = PlayerRandCracker.lookahead;
+        seed = (seed * MULTIPLIER_4 + ADDEND_4) & MASK;
+        // an item throw is the only change which keeps the lookahead table
+        if (lookahead != null)
+            PlayerRandCracker.lookahead = lookahead.afterThrows(1);
+    }
+
 
     // ===== RESET DETECTION + PLAYER RNG MAINTENANCE ===== //
 
     // TODO: update-sensitive: call hierarchy of PlayerEntity.random and PlayerEntity.getRandom()
 
     private static int expectedThrows = 0;
+    // the seeds we knew before the last reset, or null if we didn't know any
+    private static long[] lastKnownSeeds = null;
+
+    /**
+     * Returns the possible seeds from before the last reset, or null if the seed wasn't known then
+     */
+    public static long[] getLastKnownSeeds() {
+        return lastKnownSeeds == null ? null : lastKnownSeeds.clone();
+    }
 
     public static void resetCracker() {
+        // the seed is usually only a few steps on from what we knew, which /ccrackrng resync can search from
+        if (TempRules.playerCrackState.knowsSeed() || TempRules.playerCrackState == CrackState.UNCERTAIN)
+            lastKnownSeeds = hypotheses != null ? hypotheses.clone() : new long[] {seed};
         TempRules.playerCrackState = PlayerRandCracker.CrackState.UNCRACKED;
+        clearHypotheses();
+        TempRules.playerRandHypotheses = 0;
     }
 
     public static void resetCracker(String reason) {
@@ -89,8 +139,7 @@ public class PlayerRandCracker {
 
     public static void onDropItem() {
         if (expectedThrows > 0 || canMaintainPlayerRNG())
-            for (int i = 0; i < 4; i++)
-                nextInt();
+            onItemThrown();
         else
             resetCracker("dropItem");
         if (expectedThrows > 0)
@@ -160,16 +209,56 @@ public class PlayerRandCracker {
     }
 
     public static void onUnbreaking(ItemStack stack, int amount, int unbreakingLevel) {
-        if (canMaintainPlayerRNG())
-            for (int i = 0; i < amount; i++)
-                if (!(stack.getItem() instanceof ArmorItem) || nextFloat() >= 0.6)
-                    nextInt(unbreakingLevel + 1);
-                else
-                    resetCracker("unbreaking");
+        if (!canMaintainPlayerRNG())
+            return;
+        if (hypotheses == null) {
+            // with a known seed, only a failed armor check is uncertain, so step through the checks before that
+            boolean armor = stack.getItem() instanceof ArmorItem;
+            for (; amount > 0; amount--) {
+                if (armor) {
+                    if ((Lcg.next(seed) >>> 24) / (float) (1 << 24) < 0.6)
+                        break;
+                    nextFloat();
+                }
+                nextInt(unbreakingLevel + 1);
+            }
+        }
+        if (amount > 0)
+            branchUnbreaking(stack, amount, amount, unbreakingLevel);
     }
 
     public static void onUnbreakingUncertain(ItemStack stack, int minAmount, int maxAmount, int unbreakingLevel) {
-        resetCracker("unbreaking");
+        if (canMaintainPlayerRNG())
+            branchUnbreaking(stack, minAmount, maxAmount, unbreakingLevel);
+        else
+            resetCracker("unbreaking");
+    }
+
+    private static void branchUnbreaking(ItemStack stack, int minAmount, int maxAmount, int unbreakingLevel) {
+        boolean armor = stack.getItem() instanceof ArmorItem;
+        branchHypotheses("unbreaking", (state, successors) -> {
+            for (int amount = minAmount; amount <= maxAmount; amount++)
+                addUnbreakingSuccessors(state, amount, armor, unbreakingLevel, successors);
+        });
+    }
+
+    /**
+     * Adds the states the given number of unbreaking checks could leave the RNG in. When armor doesn't pass the 60%
+     * check, we can't be sure whether the unbreaking level was still rolled, so both are kept.
+     */
+    private static void addUnbreakingSuccessors(long state, int amount, boolean armor, int unbreakingLevel, Set<Long> successors) {
+        // there are already too many, so don't bother with the rest of the tree
+        if (successors.size() > TempRules.maxPlayerRandHypotheses)
+            return;
+        if (amount == 0) {
+            successors.add(state);
+            return;
+        }
+        SeedRandom rand = SeedRandom.ofState(state);
+        if (armor && rand.nextFloat() < 0.6)
+            addUnbreakingSuccessors(rand.getState(), amount - 1, armor, unbreakingLevel, successors);
+        rand.nextInt(unbreakingLevel + 1);
+        addUnbreakingSuccessors(rand.getState(), amount - 1, armor, unbreakingLevel, successors);
     }
 
     public static void onItemDamage(int amount, LivingEntity holder, ItemStack stack) {
@@ -219,7 +308,9 @@ public class PlayerRandCracker {
     }
 
     private static boolean canMaintainPlayerRNG() {
-        if (TempRules.playerRNGMaintenance && TempRules.playerCrackState.knowsSeed()) {
+        if (TempRules.playerRNGMaintenance && TempRules.playerCrackState == CrackState.UNCERTAIN) {
+            return true;
+        } else if (TempRules.playerRNGMaintenance && TempRules.playerCrackState.knowsSeed()) {
             TempRules.playerCrackState = CrackState.CRACKED;
             return true;
         } else {
@@ -227,24 +318,236 @@ public class PlayerRandCracker {
         }
     }
 
+    // ===== MULTIPLE HYPOTHESES ===== //
+
+    /*
+     * When an event might have used the player RNG in one of a few ways, rather than resetting, we keep every state it
+     * could have left the RNG in, and the crack state becomes UNCERTAIN. The hypotheses are all kept up to date with the
+     * events we're sure about, and the observations which depend on the seed, the XP seed shown by the enchanting table
+     * after an enchantment and the velocity of a thrown item, rule out the ones which don't fit. Once only one is left,
+     * the seed is cracked again. Past TempRules.maxPlayerRandHypotheses, we give up and reset instead.
+     */
+
+    // the possible seeds while uncertain, the first of which is also in seed
+    private static long[] hypotheses = null;
+    // the XP seed each hypothesis generated at the last enchantment since branching, or null if there hasn't been one
+    private static int[] hypothesisXpSeeds = null;
+    // the hypotheses before each item throw whose spawn packet we haven't seen yet
+    private static final Deque<PendingThrow> pendingThrows = new ArrayDeque<>();
+    private static final int MAX_PENDING_THROWS = 16;
+    // the spawn packet of a throw comes back within a round trip, so a throw not seen after this many ticks was lost
+    private static final int PENDING_THROW_TIMEOUT = 20;
+
+    private static void clearHypotheses() {
+        hypotheses = null;
+        hypothesisXpSeeds = null;
+        pendingThrows.clear();
+    }
+
+    /**
+     * Replaces each hypothesis with the states an event could have left it in. If there's only one hypothesis left
+     * afterwards, the seed is cracked, and if there are too many, the cracker is reset.
+     */
+    private static void branchHypotheses(String reason, BiConsumer<Long, Set<Long>> event) {
+        long[] current = hypotheses != null ? hypotheses : new long[] {seed};
+        Set<Long> successors = new LinkedHashSet<>();
+        for (long state : current) {
+            event.accept(state, successors);
+            if (successors.size() > TempRules.maxPlayerRandHypotheses) {
+                resetCracker(reason);
+                return;
+            }
+        }
+
+        long[] next = new long[successors.size()];
+        int i = 0;
+        for (long successor : successors)
+            next[i++] = successor;
+        if (next.length == 1) {
+            setSeed(next[0]);
+            TempRules.playerCrackState = CrackState.CRACKED;
+            return;
+        }
+
+        PlayerRandCracker.seed = next[0];
+        lookahead = null;
+        // the hypotheses have changed, so nothing recorded about the old ones applies to them any more
+        clearHypotheses();
+        hypotheses = next;
+        TempRules.playerRandHypotheses = next.length;
+        TempRules.playerCrackState = CrackState.UNCERTAIN;
+    }
+
+    /**
+     * Keeps only the hypotheses which fit an observation
+     */
+    private static void retainHypotheses(boolean[] keep) {
+        int count = 0;
+        for (boolean k : keep)
+            if (k)
+                count++;
+        if (count == 0) {
+            EnchantmentCracker.LOGGER.warn("None of the player RNG hypotheses fit what the server did");
+            resetCracker("noHypotheses");
+            return;
+        }
+        long[] retained = retain(hypotheses, keep, count);
+        if (count == 1) {
+            setSeed(retained[0]);
+            TempRules.playerCrackState = CrackState.CRACKED;
+            return;
+        }
+
+        hypotheses = retained;
+        if (hypothesisXpSeeds != null) {
+            int[] xpSeeds = new int[count];
+            for (int i = 0, j = 0; i < keep.length; i++)
+                if (keep[i])
+                    xpSeeds[j++] = hypothesisXpSeeds[i];
+            hypothesisXpSeeds = xpSeeds;
+        }
+        for (PendingThrow pendingThrow : pendingThrows)
+            pendingThrow.states = retain(pendingThrow.states, keep, count);
+        PlayerRandCracker.seed = hypotheses[0];
+        lookahead = null;
+        TempRules.playerRandHypotheses = count;
+    }
+
+    private static long[] retain(long[] states, boolean[] keep, int count) {
+        long[] result = new long[count];
+        for (int i = 0, j = 0; i < keep.length; i++)
+            if (keep[i])
+                result[j++] = states[i];
+        return result;
+    }
+
+    private static void onItemThrownUncertain() {
+        MinecraftClient mc = MinecraftClient.getInstance();
+        expirePendingThrows();
+        if (pendingThrows.size() == MAX_PENDING_THROWS) {
+            // dropping a throw would match every later spawn packet to the wrong throw
+            resetCracker("tooManyThrows");
+            return;
+        }
+        pendingThrows.addLast(new PendingThrow(hypotheses.clone(), mc.player.yaw, mc.player.pitch, mc.world.getTime()));
+        for (int i = 0; i < hypotheses.length; i++)
+            hypotheses[i] = (hypotheses[i] * MULTIPLIER_4 + ADDEND_4) & MASK;
+    }
+
+    private static void expirePendingThrows() {
+        long time = MinecraftClient.getInstance().world.getTime();
+        while (!pendingThrows.isEmpty() && time - pendingThrows.getFirst().time > PENDING_THROW_TIMEOUT)
+            pendingThrows.removeFirst();
+    }
+
+    /**
+     * Called when an item is enchanted while uncertain. Each hypothesis generates its own XP seed, which the
+     * enchanting table will then show some bits of.
+     */
+    static void onEnchantedItemUncertain() {
+        int[] xpSeeds = new int[hypotheses.length];
+        for (int i = 0; i < hypotheses.length; i++)
+            xpSeeds[i] = (int) (((hypotheses[i] * MULTIPLIER + ADDEND) & MASK) >>> 16);
+        nextInt();
+        hypothesisXpSeeds = xpSeeds;
+    }
+
+    /**
+     * Called with the XP seed reported by the enchanting table while uncertain, which rules out the hypotheses which
+     * generated a different XP seed at the last enchantment
+     */
+    static void onXpSeedShown(int serverReportedXPSeed) {
+        if (TempRules.playerCrackState != CrackState.UNCERTAIN || hypothesisXpSeeds == null)
+            return;
+        int[] xpSeeds = hypothesisXpSeeds;
+        boolean[] keep = new boolean[xpSeeds.length];
+        int xpSeed = 0;
+        for (int i = 0; i < xpSeeds.length; i++) {
+            keep[i] = (xpSeeds[i] & XpSeedCandidates.KNOWN_BITS_MASK) == (serverReportedXPSeed & XpSeedCandidates.KNOWN_BITS_MASK);
+            if (keep[i])
+                xpSeed = xpSeeds[i];
+        }
+        retainHypotheses(keep);
+        if (TempRules.playerCrackState == CrackState.CRACKED) {
+            EnchantmentCracker.setCrackedXpSeed(xpSeed);
+            TempRules.enchCrackState = EnchantmentCracker.CrackState.CRACKED;
+        }
+    }
+
+    /**
+     * Called when an entity spawns. If it's an item we threw while uncertain, its velocity rules out the hypotheses
+     * which would have thrown it differently.
+     */
+    public static void onEntitySpawn(EntitySpawnS2CPacket packet) {
+        if (TempRules.playerCrackState != CrackState.UNCERTAIN || pendingThrows.isEmpty() || packet.getEntityTypeId() != EntityType.ITEM)
+            return;
+        // thrown items spawn just below the player's eyes
+        ClientPlayerEntity player = MinecraftClient.getInstance().player;
+        if (Math.abs(packet.getX() - player.getX()) > 1 || Math.abs(packet.getY() - (player.getEyeY() - 0.3)) > 1
+                || Math.abs(packet.getZ() - player.getZ()) > 1)
+            return;
+        expirePendingThrows();
+        if (pendingThrows.isEmpty())
+            return;
+        PendingThrow pendingThrow = pendingThrows.getFirst();
+        if (!ThrowObservation.isPossibleThrow(pendingThrow.yaw, pendingThrow.pitch,
+                packet.getVelocityX(), packet.getVelocityY(), packet.getVelocityz()))
+            return; // someone else's item
+
+        pendingThrows.removeFirst();
+        List<Lattice_cracker.Constraint> constraints = new ArrayList<>();
+        ThrowObservation.addConstraints(constraints, 0, pendingThrow.yaw, pendingThrow.pitch,
+                packet.getVelocityX(), packet.getVelocityY(), packet.getVelocityz());
+        boolean[] keep = new boolean[pendingThrow.states.length];
+        for (int i = 0; i < keep.length; i++) {
+            keep[i] = true;
+            for (Lattice_cracker.Constraint constraint : constraints)
+                keep[i] &= constraint.matches(pendingThrow.states[i]);
+        }
+        retainHypotheses(keep);
+    }
+
+    private static class PendingThrow {
+        long[] states;
+        final float yaw;
+        final float pitch;
+        final long time;
+
+        PendingThrow(long[] states, float yaw, float pitch, long time) {
+            this.states = states;
+            this.yaw = yaw;
+            this.pitch = pitch;
+            this.time = time;
+        }
+    }
+
 
     // ===== UTILITIES ===== //
 
+    /**
+     * Returns the number of items which need to be thrown, starting from the given player seed, for the condition to
+     * be true, or -1 if that's more than {@code max}
+     */
+    public static int getItemsNeeded(long seed, Predicate<Random> condition, int max) {
+        return Lcg.firstMatch(seed, MULTIPLIER_4, ADDEND_4, max + 1, condition);
+    }
+
+    /**
+     * Returns the number of items which need to be thrown, starting from the seed of the lookahead table, for the
+     * condition to be true, or -1 if that's more than {@code max}
+     */
+    public static int getItemsNeeded(PlayerRandLookahead lookahead, Predicate<Random> condition, int max) {
+        // stepping to the next throw is cheaper than looking it up in the table
+        return getItemsNeeded(lookahead.getSeed(), condition, max);
+    }
+
     public static boolean throwItemsUntil(Predicate<Random> condition, int max) {
         if (!TempRules.playerCrackState.knowsSeed())
             return false;
         TempRules.playerCrackState = CrackState.CRACKED;
 
-        long seed = PlayerRandCracker.seed;
-        Random rand = new Random(seed ^ MULTIPLIER);
-
-        int itemsNeeded = 0;
-        for (; itemsNeeded <= max && !condition.test(rand); itemsNeeded++) {
-            for (int i = 0; i < 4; i++)
-                seed = (seed * MULTIPLIER + ADDEND) & MASK;
-            rand.setSeed(seed ^ MULTIPLIER);
-        }
-        if (itemsNeeded > max)
+        int itemsNeeded = getItemsNeeded(getLookahead(), condition, max);
+        if (itemsNeeded == -1)
             return false;
 
         for (int i = 0; i < itemsNeeded; i++) {
@@ -289,8 +592,7 @@ public class PlayerRandCracker {
         long seed = getSeed(serverPlayer.getRandom());
         setSeed(seed);
 
-        EnchantmentCracker.possibleXPSeeds.clear();
-        EnchantmentCracker.possibleXPSeeds.add(serverPlayer.getEnchantmentTableSeed());
+        EnchantmentCracker.setCrackedXpSeed(serverPlayer.getEnchantmentTableSeed());
 
         TempRules.playerCrackState = PlayerRandCracker.CrackState.CRACKED;
         TempRules.enchCrackState = EnchantmentCracker.CrackState.CRACKED;
@@ -307,6 +609,8 @@ public class PlayerRandCracker {
         RANDOM_SEED.setAccessible(true);
     }
     public static long getSeed(Random rand) {
+        if (rand instanceof SeedRandom)
+            return ((SeedRandom) rand).getState();
         try {
             return ((AtomicLong) RANDOM_SEED.get(rand)).get();
         } catch (ReflectiveOperationException e) {
@@ -321,6 +625,7 @@ public class PlayerRandCracker {
         HALF_CRACKED("half_cracked"),
         ENCH_CRACKING_2("ench_cracking_2"),
         CRACKING("cracking"),
+        UNCERTAIN("uncertain"),
         EATING("eating"),
         MANIPULATING_ENCHANTMENTS("manipulating_enchantments"),
         WAITING_DUMMY_ENCHANT("waiting_dummy_enchant", true),
@@ -0,0 +1,130 @@
+package net.earthcomputer.clientcommands.features;
+
+import java.util.Arrays;
+
+/**
+ * A table of the future player RNG states, indexed by the number of items thrown from now, and the XP seeds a dummy
+ * enchantment would generate after that many throws.
+ *
+ * The table is extended lazily as deeper lookups are made, and is shared by everything which looks ahead in the
+ * player RNG, so repeated queries against the same player seed don't walk the RNG again. Throwing an item only moves
+ * the start of the table along by one entry; any other change to the player seed starts a new table. Lookups may be
+ * made from any thread, since the entries are never changed once they are published.
+ */
+public class PlayerRandLookahead {
+
+    private static final int INITIAL_CAPACITY = 64;
+    // beyond this, entries are computed with a jump ahead rather than stored
+    private static final int MAX_CACHED_THROWS = 1 << 17;
+
+    private final Table table;
+    private final int offset;
+
+    /**
+     * Creates a new lookahead table starting from the given player seed
+     */
+    public PlayerRandLookahead(long seed) {
+        this(new Table(seed), 0);
+    }
+
+    private PlayerRandLookahead(Table table, int offset) {
+        this.table = table;
+        this.offset = offset;
+    }
+
+    /**
+     * Returns the player seed this lookahead starts from
+     */
+    public long getSeed() {
+        return getState(0);
+    }
+
+    /**
+     * Returns the player seed after the given number of item throws
+     */
+    public long getState(int itemThrows) {
+        long index = (long) offset + itemThrows;
+        if (index >= MAX_CACHED_THROWS)
+            return Lcg.advance(table.baseSeed, 4 * index);
+        Entries entries = table.entries;
+        if (index >= entries.size)
+            entries = table.extend((int) index + 1);
+        return entries.states[(int) index];
+    }
+
+    /**
+     * Returns the XP seed which a dummy enchantment would generate after the given number of item throws
+     */
+    public int getXpSeed(int itemThrows) {
+        long index = (long) offset + itemThrows;
+        if (index >= MAX_CACHED_THROWS)
+            return toXpSeed(Lcg.advance(table.baseSeed, 4 * index));
+        Entries entries = table.entries;
+        if (index >= entries.size)
+            entries = table.extend((int) index + 1);
+        return entries.xpSeeds[(int) index];
+    }
+
+    /**
+     * Returns the lookahead from after the given number of item throws, sharing this table
+     */
+    public PlayerRandLookahead afterThrows(int itemThrows) {
+        long offset = (long) this.offset + itemThrows;
+        if (offset >= MAX_CACHED_THROWS)
+            return new PlayerRandLookahead(getState(itemThrows));
+        return new PlayerRandLookahead(table, (int) offset);
+    }
+
+    private static int toXpSeed(long state) {
+        return (int) (((state * PlayerRandCracker.MULTIPLIER + PlayerRandCracker.ADDEND) & PlayerRandCracker.MASK) >>> 16);
+    }
+
+    private static class Table {
+        private final long baseSeed;
+        private volatile Entries entries;
+
+        Table(long baseSeed) {
+            this.baseSeed = baseSeed;
+            long[] states = new long[INITIAL_CAPACITY];
+            int[] xpSeeds = new int[INITIAL_CAPACITY];
+            states[0] = baseSeed;
+            xpSeeds[0] = toXpSeed(baseSeed);
+            this.entries = new Entries(states, xpSeeds, 1);
+        }
+
+        synchronized Entries extend(int minSize) {
+            Entries entries = this.entries;
+            if (minSize <= entries.size)
+                return entries;
+
+            int capacity = entries.states.length;
+            while (capacity < minSize)
+                capacity = Math.min(capacity * 2, MAX_CACHED_THROWS);
+            // fill in new arrays rather than the published ones, so that readers never see a partly written entry
+            long[] states = Arrays.copyOf(entries.states, capacity);
+            int[] xpSeeds = Arrays.copyOf(entries.xpSeeds, capacity);
+            long state = states[entries.size - 1];
+            for (int i = entries.size; i < capacity; i++) {
+                state = (state * PlayerRandCracker.MULTIPLIER_4 + PlayerRandCracker.ADDEND_4) & PlayerRandCracker.MASK;
+                states[i] = state;
+                xpSeeds[i] = toXpSeed(state);
+            }
+
+            this.entries = entries = new Entries(states, xpSeeds, capacity);
+            return entries;
+        }
+    }
+
+    private static class Entries {
+        final long[] states;
+        final int[] xpSeeds;
+        final int size;
+
+        Entries(long[] states, int[] xpSeeds, int size) {
+            this.states = states;
+            this.xpSeeds = xpSeeds;
+            this.size = size;
+        }
+    }
+
+}
@@ -0,0 +1,147 @@
+package net.earthcomputer.clientcommands.features;
+
+import net.earthcomputer.clientcommands.ForgeHooks;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Scores items by how much putting them in the enchanting table would narrow down the XP seed candidates.
+ *
+ * For each item, a sample of the surviving candidates is run through the enchanting algorithm to see what the table
+ * would show with each of them: the levels and the clue in each slot. Seeds which show the same thing can't be told
+ * apart by that view, so if a fraction {@code p} of the sample shows some view, that view leaves {@code p} of the
+ * candidates. Weighting by the chance of seeing each view, the expected fraction of candidates left is the sum of
+ * {@code p * p}. The items are scored in parallel on the {@link CrackerPool}, after the Forge level hook has been
+ * called for each of them on the client thread.
+ */
+public class ProbeSelection {
+
+    private final int power;
+    private final List<ItemStack> stacks;
+    // the Forge level hook for each item, slot and level, or null if there's no hook
+    private final int[][][] levelTables;
+    private final int[] sample;
+    private final int candidates;
+
+    /**
+     * @param stacks one stack of each item to score
+     * @param sample the sample of the surviving candidates
+     * @param candidates the number of surviving candidates
+     */
+    ProbeSelection(World world, BlockPos tablePos, int power, List<ItemStack> stacks, int[] sample, int candidates) {
+        this.power = power;
+        this.stacks = stacks;
+        this.levelTables = new int[stacks.size()][][];
+        for (int i = 0; i < stacks.size(); i++)
+            levelTables[i] = ForgeHooks.instance().getEnchantmentLevelTable(world, tablePos, power, stacks.get(i));
+        this.sample = sample;
+        this.candidates = candidates;
+    }
+
+    /**
+     * Scores the items, which should be called from within the {@link CrackerPool}. Returns the scores, best first.
+     */
+    List<Score> run() {
+        Score[] scores = new Score[stacks.size()];
+        List<ScoreTask> tasks = new ArrayList<>();
+        for (int i = 0; i < stacks.size(); i++)
+            tasks.add(new ScoreTask(scores, i));
+        RecursiveAction.invokeAll(tasks);
+
+        List<Score> result = new ArrayList<>(Arrays.asList(scores));
+        result.sort(Comparator.comparingDouble(Score::getExpectedCandidates));
+        return result;
+    }
+
+    private Score score(ItemStack stack, int[][] levelTable) {
+        Item item = stack.getItem();
+        int enchantability = item.getEnchantability();
+        EnchantmentSimulator simulator = new EnchantmentSimulator();
+
+        long[] views = new long[sample.length];
+        int[] levels = new int[3];
+        for (int i = 0; i < sample.length; i++) {
+            int xpSeed = sample[i];
+            simulator.setSeed(xpSeed);
+            for (int slot = 0; slot < 3; slot++) {
+                int level = simulator.calculateEnchantmentPower(slot, power, enchantability);
+                if (level < slot + 1)
+                    level = 0;
+                levels[slot] = levelTable == null ? level : levelTable[slot][level];
+            }
+
+            // what the table shows in each slot, packed as 6 bits of level, 11 bits of clue id and 4 bits of clue level
+            long view = 0;
+            for (int slot = 0; slot < 3; slot++) {
+                int clue = 0;
+                if (levels[slot] > 0) {
+                    int enchantmentCount = simulator.generateEnchantments(item, xpSeed, slot, levels[slot]);
+                    if (enchantmentCount != 0) {
+                        int index = simulator.nextInt(enchantmentCount);
+                        clue = ((simulator.getEnchantmentId(index) + 1) & 0x7ff) << 4 | (simulator.getEnchantmentLevel(index) & 15);
+                    }
+                }
+                view = view << 21 | (levels[slot] & 63) << 15 | clue;
+            }
+            views[i] = view;
+        }
+
+        // sum the squares of the fractions of the sample showing each view
+        Arrays.sort(views);
+        double remainingFraction = 0;
+        for (int start = 0; start < views.length; ) {
+            int end = start + 1;
+            while (end < views.length && views[end] == views[start])
+                end++;
+            double fraction = (double) (end - start) / views.length;
+            remainingFraction += fraction * fraction;
+            start = end;
+        }
+        return new Score(item, candidates * remainingFraction);
+    }
+
+    public static class Score {
+        private final Item item;
+        private final double expectedCandidates;
+
+        private Score(Item item, double expectedCandidates) {
+            this.item = item;
+            this.expectedCandidates = expectedCandidates;
+        }
+
+        public Item getItem() {
+            return item;
+        }
+
+        /**
+         * The expected number of candidates left after viewing this item in the enchanting table
+         */
+        public double getExpectedCandidates() {
+            return expectedCandidates;
+        }
+    }
+
+    private class ScoreTask extends RecursiveAction {
+        private final Score[] scores;
+        private final int index;
+
+        ScoreTask(Score[] scores, int index) {
+            this.scores = scores;
+            this.index = index;
+        }
+
+        @Override
+        protected void compute() {
+            scores[index] = score(stacks.get(index), levelTables[index]);
+        }
+    }
+
+}
@@ -0,0 +1,84 @@
+package net.earthcomputer.clientcommands.features;
+
+import java.util.Random;
+
+/**
+ * A {@link Random} over a plain long state, for passing to code which expects a {@link Random} in the crackers' hot
+ * loops.
+ *
+ * {@link Random} keeps its state in an {@link java.util.concurrent.atomic.AtomicLong} and does a CAS on every call,
+ * and reading its state back needs reflection. This class gives the same numbers from the same seed, but its state is
+ * a plain field which can be read and set directly, so one instance can be moved between states without allocating.
+ *
+ * Instances are not thread safe; use one per thread.
+ */
+public class SeedRandom extends Random {
+
+    // set by Random's constructor through setSeed, so these mustn't have initializers
+    private long state;
+    private double nextNextGaussian;
+    private boolean haveNextNextGaussian;
+
+    public SeedRandom() {
+        super(0);
+    }
+
+    public SeedRandom(long seed) {
+        super(seed);
+    }
+
+    /**
+     * Creates a random in the given LCG state, which is the seed after scrambling
+     */
+    public static SeedRandom ofState(long state) {
+        SeedRandom rand = new SeedRandom();
+        rand.setState(state);
+        return rand;
+    }
+
+    /**
+     * Returns the LCG state, which is the seed after scrambling
+     */
+    public long getState() {
+        return state;
+    }
+
+    /**
+     * Sets the LCG state, which is the seed after scrambling
+     */
+    public void setState(long state) {
+        this.state = state & Lcg.MASK;
+        haveNextNextGaussian = false;
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        setState(seed ^ Lcg.MULTIPLIER);
+    }
+
+    @Override
+    protected int next(int bits) {
+        state = (state * Lcg.MULTIPLIER + Lcg.ADDEND) & Lcg.MASK;
+        return (int) (state >>> (48 - bits));
+    }
+
+    @Override
+    public double nextGaussian() {
+        // the same as Random.nextGaussian, which keeps its spare gaussian in private fields
+        if (haveNextNextGaussian) {
+            haveNextNextGaussian = false;
+            return nextNextGaussian;
+        }
+        double v1, v2, s;
+        do {
+            v1 = 2 * nextDouble() - 1;
+            v2 = 2 * nextDouble() - 1;
+            s = v1 * v1 + v2 * v2;
+        } while (s >= 1 || s == 0);
+        double multiplier = StrictMath.sqrt(-2 * StrictMath.log(s) / s);
+        nextNextGaussian = v2 * multiplier;
+        haveNextNextGaussian = true;
+        return v1 * multiplier;
+    }
+
+}
@@ -0,0 +1,306 @@
+package net.earthcomputer.clientcommands.features;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+/**
+ * The set of XP seeds which are still possible while cracking the enchantment seed.
+ *
+ * The server tells us bits 4-15 of the XP seed, so only 20 bits are unknown. Rather than boxing up to 2^20 integers
+ * into a hash set, we store one bit per combination of the unknown bits. The index of a candidate is made up of the
+ * upper 16 bits of the seed followed by its lower 4 bits.
+ */
+public class XpSeedCandidates {
+
+    public static final int KNOWN_BITS_MASK = 0x0000fff0;
+    public static final int CANDIDATE_COUNT = 1 << 20;
+    static final int WORD_COUNT = CANDIDATE_COUNT >>> 6;
+    private static final int PARALLEL_THRESHOLD_WORDS = 256;
+    private static final int PROGRESS_INTERVAL_WORDS = 64;
+    private static final int BLOCK_WORDS = 64;
+
+    private final long[] words = new long[WORD_COUNT];
+    private int knownBits;
+    private int size;
+
+    public static int toSeed(int knownBits, int index) {
+        return ((index >>> 4) << 16) | knownBits | (index & 15);
+    }
+
+    public static int toIndex(int seed) {
+        return ((seed >>> 16) << 4) | (seed & 15);
+    }
+
+    /**
+     * Resets the candidates to every XP seed consistent with the bits the server reported
+     */
+    public void fill(int serverReportedXPSeed) {
+        knownBits = serverReportedXPSeed & KNOWN_BITS_MASK;
+        Arrays.fill(words, -1L);
+        size = CANDIDATE_COUNT;
+    }
+
+    /**
+     * Resets the candidates to the single given XP seed
+     */
+    public void set(int xpSeed) {
+        clear();
+        knownBits = xpSeed & KNOWN_BITS_MASK;
+        int index = toIndex(xpSeed);
+        words[index >>> 6] = 1L << index;
+        size = 1;
+    }
+
+    /**
+     * Returns an independent copy of these candidates
+     */
+    public XpSeedCandidates copy() {
+        XpSeedCandidates copy = new XpSeedCandidates();
+        System.arraycopy(words, 0, copy.words, 0, WORD_COUNT);
+        copy.knownBits = knownBits;
+        copy.size = size;
+        return copy;
+    }
+
+    public void clear() {
+        if (size != 0) {
+            Arrays.fill(words, 0);
+            size = 0;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int getSeed(int index) {
+        return toSeed(knownBits, index);
+    }
+
+    public boolean contains(int xpSeed) {
+        if (size == 0 || (xpSeed & KNOWN_BITS_MASK) != knownBits)
+            return false;
+        int index = toIndex(xpSeed);
+        return (words[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Returns the index of the first candidate at or after the given index, or -1 if there is none
+     */
+    public int nextIndex(int fromIndex) {
+        if (fromIndex >= CANDIDATE_COUNT)
+            return -1;
+        int wordIndex = fromIndex >>> 6;
+        long word = words[wordIndex] & (-1L << fromIndex);
+        while (true) {
+            if (word != 0)
+                return (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+            if (++wordIndex == WORD_COUNT)
+                return -1;
+            word = words[wordIndex];
+        }
+    }
+
+    public int getFirstSeed() {
+        int index = nextIndex(0);
+        if (index == -1)
+            throw new NoSuchElementException();
+        return getSeed(index);
+    }
+
+    /**
+     * Returns up to {@code maxCount} candidates, spread evenly through all the candidates
+     */
+    public int[] sample(int maxCount) {
+        int count = Math.min(size, maxCount);
+        int[] sample = new int[count];
+        if (count == 0)
+            return sample;
+        // take every stride-th candidate, rounding the stride up so we don't run out before the end
+        int stride = (size + count - 1) / count;
+        int found = 0;
+        int rank = 0;
+        for (int index = nextIndex(0); index != -1 && found < count; index = nextIndex(index + 1), rank++) {
+            if (rank % stride == 0)
+                sample[found++] = getSeed(index);
+        }
+        return found == count ? sample : Arrays.copyOf(sample, found);
+    }
+
+    /**
+     * Removes every candidate rejected by the filter
+     */
+    public void retainAll(Filter filter) {
+        retainAll(filter, null);
+    }
+
+    /**
+     * Removes every candidate rejected by the filter, reporting the progress to the given progress tracker if it's not
+     * null. Progress is counted in candidate indices, out of {@link #CANDIDATE_COUNT}.
+     */
+    public void retainAll(Filter filter, CrackerExecutor.Progress progress) {
+        size -= retainAll(filter, 0, WORD_COUNT, progress);
+    }
+
+    /**
+     * Removes every candidate rejected by the filter, splitting the work across the given pool. Each subtask gets its
+     * own filter from the factory so that filters may keep mutable scratch state. The result is the same as
+     * {@link #retainAll(Filter)}.
+     */
+    public void retainAllParallel(Supplier<? extends Filter> filterFactory, ForkJoinPool pool) {
+        retainAllParallel(filterFactory, pool, null);
+    }
+
+    public void retainAllParallel(Supplier<? extends Filter> filterFactory, ForkJoinPool pool, CrackerExecutor.Progress progress) {
+        size -= pool.invoke(new RetainTask(filterFactory, 0, WORD_COUNT, progress));
+    }
+
+    /**
+     * Removes the candidates in the given range of words which are rejected by the filter, and returns how many were
+     * removed. Disjoint ranges may be filtered concurrently, as long as the caller takes the total removed off the size
+     * afterwards.
+     */
+    int retainAll(Filter filter, int fromWord, int toWord, CrackerExecutor.Progress progress) {
+        if (filter instanceof TwoPhaseFilter)
+            return retainAllTwoPhase((TwoPhaseFilter) filter, fromWord, toWord, progress);
+
+        int removed = 0;
+        int reportedWord = fromWord;
+        int reportedRemoved = 0;
+        for (int wordIndex = fromWord; wordIndex < toWord; wordIndex++) {
+            long word = words[wordIndex];
+            long remaining = word;
+            while (remaining != 0) {
+                int bit = Long.numberOfTrailingZeros(remaining);
+                remaining &= remaining - 1;
+                if (!filter.test(toSeed(knownBits, (wordIndex << 6) | bit))) {
+                    word &= ~(1L << bit);
+                    removed++;
+                }
+            }
+            words[wordIndex] = word;
+            if (progress != null && wordIndex + 1 - reportedWord == PROGRESS_INTERVAL_WORDS) {
+                progress.add((long) (wordIndex + 1 - reportedWord) << 6, reportedRemoved - removed);
+                reportedWord = wordIndex + 1;
+                reportedRemoved = removed;
+            }
+        }
+        if (progress != null)
+            progress.add((long) (toWord - reportedWord) << 6, reportedRemoved - removed);
+        return removed;
+    }
+
+    /**
+     * Filters a block of words at a time. The candidates of a block are gathered into a column of seeds, the first
+     * phase compacts the survivors to the front of the column, and the second phase only runs on those survivors.
+     */
+    private int retainAllTwoPhase(TwoPhaseFilter filter, int fromWord, int toWord, CrackerExecutor.Progress progress) {
+        int[] column = new int[BLOCK_WORDS << 6];
+        int knownBits = this.knownBits;
+        int removed = 0;
+        for (int blockStart = fromWord; blockStart < toWord; blockStart += BLOCK_WORDS) {
+            int blockEnd = Math.min(blockStart + BLOCK_WORDS, toWord);
+
+            int count = 0;
+            for (int wordIndex = blockStart; wordIndex < blockEnd; wordIndex++) {
+                long word = words[wordIndex];
+                while (word != 0) {
+                    column[count++] = toSeed(knownBits, (wordIndex << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+
+            // always write the seed, only keep it if it passes, to avoid a hard to predict branch
+            int survivors = 0;
+            for (int i = 0; i < count; i++) {
+                int seed = column[i];
+                column[survivors] = seed;
+                survivors += filter.testFirstPhase(seed) ? 1 : 0;
+            }
+
+            Arrays.fill(words, blockStart, blockEnd, 0L);
+            int retained = 0;
+            for (int i = 0; i < survivors; i++) {
+                int seed = column[i];
+                if (filter.testSecondPhase(seed)) {
+                    int index = toIndex(seed);
+                    words[index >>> 6] |= 1L << index;
+                    retained++;
+                }
+            }
+
+            filter.recordRejections(count - survivors, survivors - retained);
+            removed += count - retained;
+            if (progress != null)
+                progress.add((long) (blockEnd - blockStart) << 6, retained - count);
+        }
+        return removed;
+    }
+
+    public void remove(int index) {
+        long mask = 1L << index;
+        if ((words[index >>> 6] & mask) != 0) {
+            words[index >>> 6] &= ~mask;
+            size--;
+        }
+    }
+
+    @FunctionalInterface
+    public interface Filter {
+        boolean test(int xpSeed);
+    }
+
+    /**
+     * A filter made of a cheap check which rejects most candidates, followed by an expensive one. Filtering with it
+     * runs the first phase over a whole block of candidates before running the second phase on the survivors.
+     */
+    public interface TwoPhaseFilter extends Filter {
+        boolean testFirstPhase(int xpSeed);
+
+        boolean testSecondPhase(int xpSeed);
+
+        @Override
+        default boolean test(int xpSeed) {
+            return testFirstPhase(xpSeed) && testSecondPhase(xpSeed);
+        }
+
+        /**
+         * Called after each block with the number of candidates each phase rejected
+         */
+        default void recordRejections(int firstPhase, int secondPhase) {
+        }
+    }
+
+    private class RetainTask extends RecursiveTask<Integer> {
+        private final Supplier<? extends Filter> filterFactory;
+        private final int fromWord;
+        private final int toWord;
+        private final CrackerExecutor.Progress progress;
+
+        RetainTask(Supplier<? extends Filter> filterFactory, int fromWord, int toWord, CrackerExecutor.Progress progress) {
+            this.filterFactory = filterFactory;
+            this.fromWord = fromWord;
+            this.toWord = toWord;
+            this.progress = progress;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (toWord - fromWord <= PARALLEL_THRESHOLD_WORDS)
+                return retainAll(filterFactory.get(), fromWord, toWord, progress);
+            int mid = (fromWord + toWord) >>> 1;
+            RetainTask right = new RetainTask(filterFactory, mid, toWord, progress);
+            right.fork();
+            int removed = new RetainTask(filterFactory, fromWord, mid, progress).compute();
+            return removed + right.join();
+        }
+    }
+
+}
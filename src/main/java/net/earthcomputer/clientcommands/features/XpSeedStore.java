@@ -0,0 +1,127 @@
+package net.earthcomputer.clientcommands.features;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonPrimitive;
+import net.earthcomputer.clientcommands.ClientCommands;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.ServerInfo;
+import org.apache.commons.io.FileUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.OptionalInt;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers the last cracked XP seed on each server, for each player.
+ *
+ * The XP seed is saved with the player on the server, so it's still the same after reconnecting, unless the player
+ * enchanted something while we weren't watching. Rather than cracking it again from scratch, the enchantment cracker
+ * checks the stored seed against the first enchanting table observation and only does a full crack if it doesn't fit.
+ */
+public class XpSeedStore {
+
+    private static final Logger LOGGER = LogManager.getLogger("XpSeedStore");
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    // saves on a thread of its own rather than the cracker thread, which may be busy for a long time. The thread isn't
+    // a daemon, so a save queued just before quitting still finishes, and it stops when idle so it doesn't keep the
+    // game running.
+    private static final ThreadPoolExecutor IO_EXECUTOR = new ThreadPoolExecutor(1, 1, 5, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), r -> new Thread(r, "XP Seed Store IO Thread"));
+
+    static {
+        IO_EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private static JsonObject seeds;
+
+    /**
+     * Returns the stored XP seed for the current server and player, if there is one
+     */
+    public static OptionalInt getXpSeed() {
+        String key = getKey();
+        if (key == null)
+            return OptionalInt.empty();
+        JsonObject seeds = getSeeds();
+        if (!seeds.has(key))
+            return OptionalInt.empty();
+        try {
+            return OptionalInt.of(seeds.get(key).getAsInt());
+        } catch (ClassCastException | IllegalStateException | NumberFormatException e) {
+            return OptionalInt.empty();
+        }
+    }
+
+    public static void setXpSeed(int xpSeed) {
+        String key = getKey();
+        if (key == null)
+            return;
+        JsonObject seeds = getSeeds();
+        JsonPrimitive value = new JsonPrimitive(xpSeed);
+        if (!value.equals(seeds.get(key))) {
+            seeds.add(key, value);
+            save();
+        }
+    }
+
+    /**
+     * Forgets the stored XP seed for the current server and player, when it has changed to something we don't know
+     */
+    public static void remove() {
+        String key = getKey();
+        if (key != null && getSeeds().remove(key) != null)
+            save();
+    }
+
+    private static String getKey() {
+        MinecraftClient client = MinecraftClient.getInstance();
+        ServerInfo server = client.getCurrentServerEntry();
+        if (server == null || client.player == null)
+            return null;
+        return server.address + "/" + client.player.getUuid();
+    }
+
+    private static File getFile() {
+        return new File(ClientCommands.configDir, "xp_seeds.json");
+    }
+
+    private static JsonObject getSeeds() {
+        if (seeds == null) {
+            seeds = new JsonObject();
+            File file = getFile();
+            if (file.exists()) {
+                try {
+                    JsonObject loaded = GSON.fromJson(FileUtils.readFileToString(file, StandardCharsets.UTF_8), JsonObject.class);
+                    if (loaded != null)
+                        seeds = loaded;
+                } catch (IOException | JsonParseException e) {
+                    LOGGER.error("Error loading stored XP seeds", e);
+                }
+            }
+        }
+        return seeds;
+    }
+
+    private static void save() {
+        String json = GSON.toJson(seeds);
+        File file = getFile();
+        // don't block the client thread on file IO
+        IO_EXECUTOR.execute(() -> {
+            try {
+                FileUtils.writeStringToFile(file, json, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                LOGGER.error("Error saving stored XP seeds", e);
+            }
+        });
+    }
+
+}
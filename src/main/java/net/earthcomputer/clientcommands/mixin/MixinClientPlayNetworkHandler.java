@@ -5,12 +5,19 @@ import com.mojang.brigadier.CommandDispatcher;
 import net.cortex.clientAddon.cracker.SeedCracker;
 import net.earthcomputer.clientcommands.ClientCommands;
 import net.earthcomputer.clientcommands.ServerBrandManager;
+import net.earthcomputer.clientcommands.features.EnchantPowerCache;
+import net.earthcomputer.clientcommands.features.EnchantingAlgorithm;
+import net.earthcomputer.clientcommands.features.EnchantmentTables;
+import net.earthcomputer.clientcommands.features.PlayerRandCracker;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.gui.screen.Screen;
 import net.minecraft.client.network.ClientPlayNetworkHandler;
+import net.minecraft.client.network.packet.ChunkDataS2CPacket;
 import net.minecraft.client.network.packet.CommandTreeS2CPacket;
 import net.minecraft.client.network.packet.CustomPayloadS2CPacket;
 import net.minecraft.client.network.packet.EntitySpawnS2CPacket;
+import net.minecraft.client.network.packet.GameJoinS2CPacket;
+import net.minecraft.client.network.packet.UnloadChunkS2CPacket;
 import net.minecraft.network.ClientConnection;
 import net.minecraft.server.command.CommandSource;
 import net.minecraft.server.command.ServerCommandSource;
@@ -32,9 +39,16 @@ public class MixinClientPlayNetworkHandler {
     @SuppressWarnings("unchecked")
     @Inject(method = "<init>", at = @At("RETURN"))
     public void onInit(MinecraftClient mc, Screen screen, ClientConnection connection, GameProfile profile, CallbackInfo ci) {
+        EnchantingAlgorithm.onConnect();
         ClientCommands.registerCommands((CommandDispatcher<ServerCommandSource>) (Object) commandDispatcher);
     }
 
+    @Inject(method = "onGameJoin", at = @At("TAIL"))
+    public void onOnGameJoin(GameJoinS2CPacket packet, CallbackInfo ci) {
+        // the registries are synced by the time the world is joined
+        EnchantmentTables.invalidate();
+    }
+
     @SuppressWarnings("unchecked")
     @Inject(method = "onCommandTree", at = @At("TAIL"))
     public void onOnCommandTree(CommandTreeS2CPacket packet, CallbackInfo ci) {
@@ -44,6 +58,17 @@ public class MixinClientPlayNetworkHandler {
     @Inject(method = "onEntitySpawn", at = @At("TAIL"))
     public void onOnEntitySpawn(EntitySpawnS2CPacket packet, CallbackInfo ci) {
         SeedCracker.onEntityCreation(packet);
+        PlayerRandCracker.onEntitySpawn(packet);
+    }
+
+    @Inject(method = "onChunkData", at = @At("TAIL"))
+    public void onOnChunkData(ChunkDataS2CPacket packet, CallbackInfo ci) {
+        EnchantPowerCache.onChunkChange(packet.getX(), packet.getZ());
+    }
+
+    @Inject(method = "onUnloadChunk", at = @At("TAIL"))
+    public void onOnUnloadChunk(UnloadChunkS2CPacket packet, CallbackInfo ci) {
+        EnchantPowerCache.onChunkChange(packet.getX(), packet.getZ());
     }
 
     @Inject(method = "onCustomPayload", at = @At("TAIL"))
@@ -2,6 +2,7 @@ package net.earthcomputer.clientcommands.mixin;
 
 import net.earthcomputer.clientcommands.GuiBlocker;
 import net.earthcomputer.clientcommands.ServerBrandManager;
+import net.earthcomputer.clientcommands.features.EnchantPowerCache;
 import net.earthcomputer.clientcommands.features.PlayerRandCracker;
 import net.earthcomputer.clientcommands.features.RenderSettings;
 import net.earthcomputer.clientcommands.TempRules;
@@ -46,6 +47,7 @@ public abstract class MixinMinecraftClient implements IMinecraftClient {
     public void onSetWorld(CallbackInfo ci) {
         PlayerRandCracker.onRecreatePlayer();
         TaskManager.onWorldUnload();
+        EnchantPowerCache.invalidate();
     }
 
     @Inject(method = "openScreen", at = @At("HEAD"), cancellable = true)
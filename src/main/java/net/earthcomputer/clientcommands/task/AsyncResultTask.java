@@ -0,0 +1,94 @@
+package net.earthcomputer.clientcommands.task;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+/**
+ * Waits for a result which is being computed off the client thread, then hands it to a callback on the client thread.
+ * If the computation throws, the error callback is called on the client thread instead, so that the caller can reset
+ * whatever state was waiting for the result.
+ */
+public class AsyncResultTask<T> extends LongTask {
+
+    private static final Logger LOGGER = LogManager.getLogger("AsyncResultTask");
+
+    private final CompletableFuture<T> future;
+    private final Consumer<T> callback;
+    private Runnable onTick = () -> {};
+    private Runnable onCancel = () -> {};
+    private Consumer<Throwable> onError = e -> {};
+
+    public AsyncResultTask(CompletableFuture<T> future, Consumer<T> callback) {
+        this.future = future;
+        this.callback = callback;
+    }
+
+    /**
+     * Sets an action to run every tick while waiting, e.g. to show progress
+     */
+    public AsyncResultTask<T> onTick(Runnable onTick) {
+        this.onTick = onTick;
+        return this;
+    }
+
+    /**
+     * Sets an action to run with the cause if the background work throws, instead of the callback
+     */
+    public AsyncResultTask<T> onError(Consumer<Throwable> onError) {
+        this.onError = onError;
+        return this;
+    }
+
+    /**
+     * Sets an action to run if the task is stopped before the result is ready, to stop the background work
+     */
+    public AsyncResultTask<T> onCancel(Runnable onCancel) {
+        this.onCancel = onCancel;
+        return this;
+    }
+
+    @Override
+    public void initialize() {
+    }
+
+    @Override
+    public boolean condition() {
+        return !future.isDone();
+    }
+
+    @Override
+    public void increment() {
+    }
+
+    @Override
+    public void body() {
+        onTick.run();
+        scheduleDelay();
+    }
+
+    @Override
+    public void onCompleted() {
+        if (!future.isDone()) {
+            onCancel.run();
+            future.cancel(false);
+            return;
+        }
+        T result;
+        try {
+            result = future.join();
+        } catch (CancellationException e) {
+            return;
+        } catch (CompletionException e) {
+            LOGGER.error("Error in background task", e.getCause());
+            onError.accept(e.getCause());
+            return;
+        }
+        callback.accept(result);
+    }
+
+}
@@ -0,0 +1,129 @@
+package net.earthcomputer.clientcommands.features;
+
+import net.minecraft.Bootstrap;
+import net.minecraft.enchantment.EnchantmentHelper;
+import net.minecraft.enchantment.InfoEnchantment;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import net.minecraft.util.registry.Registry;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the simulator against vanilla for every enchantable item, the same way as the enchanting table uses them.
+ *
+ * There are no mixins here, so both sides use the vanilla enchantment weights and compatibilities. The 1.14 algorithm
+ * is checked against {@link EnchantingAlgorithm#V1_14}, which is what the mixins use when connected to 1.14.
+ */
+public class EnchantmentSimulatorTest {
+
+    private static final int SEEDS = 256;
+
+    @BeforeClass
+    public static void bootstrap() {
+        Bootstrap.initialize();
+    }
+
+    @After
+    public void resetAlgorithm() {
+        EnchantingAlgorithm.set(EnchantingAlgorithm.LATEST);
+    }
+
+    @Test
+    public void testLatest() {
+        EnchantingAlgorithm.set(EnchantingAlgorithm.LATEST);
+        checkAllItems((rand, stack, level) -> EnchantmentHelper.getEnchantments(rand, stack, level, false));
+    }
+
+    @Test
+    public void testV1_14() {
+        EnchantingAlgorithm.set(EnchantingAlgorithm.V1_14);
+        checkAllItems((rand, stack, level) -> EnchantingAlgorithm.V1_14.getEnchantments(rand, stack, level, false));
+    }
+
+    private static void checkAllItems(Reference reference) {
+        EnchantmentSimulator simulator = new EnchantmentSimulator();
+        Random seedSource = new Random(0);
+        Random rand = new Random();
+        int itemsChecked = 0;
+
+        for (Item item : Registry.ITEM) {
+            int enchantability = item.getEnchantability();
+            if (enchantability <= 0)
+                continue;
+            itemsChecked++;
+            ItemStack stack = new ItemStack(item);
+
+            for (int i = 0; i < SEEDS; i++) {
+                int xpSeed = seedSource.nextInt();
+                for (int bookshelves = 0; bookshelves <= 15; bookshelves++) {
+                    // the levels are rolled one after the other from the XP seed
+                    rand.setSeed(xpSeed);
+                    simulator.setSeed(xpSeed);
+                    int[] levels = new int[3];
+                    for (int slot = 0; slot < 3; slot++) {
+                        levels[slot] = EnchantmentHelper.calculateEnchantmentPower(rand, slot, bookshelves, stack);
+                        int simulated = simulator.calculateEnchantmentPower(slot, bookshelves, enchantability);
+                        if (simulated != levels[slot])
+                            fail("Level " + simulated + " instead of " + levels[slot] + " " + describe(item, xpSeed, bookshelves, slot));
+                    }
+
+                    for (int slot = 0; slot < 3; slot++) {
+                        if (levels[slot] <= 0)
+                            continue;
+                        // as in EnchantingTableContainer.generateEnchantments
+                        rand.setSeed(xpSeed + slot);
+                        List<InfoEnchantment> expected = new ArrayList<>(reference.getEnchantments(rand, stack, levels[slot]));
+                        if (item == Items.BOOK && expected.size() > 1)
+                            expected.remove(rand.nextInt(expected.size()));
+
+                        simulator.generateEnchantments(item, xpSeed, slot, levels[slot]);
+                        List<InfoEnchantment> simulated = simulator.getEnchantments();
+                        if (!enchantmentsEqual(expected, simulated))
+                            fail("Enchantments " + describe(simulated) + " instead of " + describe(expected) + " " + describe(item, xpSeed, bookshelves, slot));
+                    }
+                }
+            }
+        }
+
+        assertTrue("No enchantable items", itemsChecked > 0);
+    }
+
+    private static boolean enchantmentsEqual(List<InfoEnchantment> expected, List<InfoEnchantment> actual) {
+        if (expected.size() != actual.size())
+            return false;
+        for (int i = 0; i < expected.size(); i++) {
+            if (expected.get(i).enchantment != actual.get(i).enchantment || expected.get(i).level != actual.get(i).level)
+                return false;
+        }
+        return true;
+    }
+
+    private static String describe(Item item, int xpSeed, int bookshelves, int slot) {
+        return "for " + Registry.ITEM.getId(item) + " with XP seed " + xpSeed + ", " + bookshelves + " bookshelves, slot " + slot;
+    }
+
+    private static String describe(List<InfoEnchantment> enchantments) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < enchantments.size(); i++) {
+            if (i != 0)
+                sb.append(", ");
+            sb.append(Registry.ENCHANTMENT.getId(enchantments.get(i).enchantment)).append(' ').append(enchantments.get(i).level);
+        }
+        return sb.append(']').toString();
+    }
+
+    @FunctionalInterface
+    private interface Reference {
+        List<InfoEnchantment> getEnchantments(Random rand, ItemStack stack, int level);
+    }
+
+}